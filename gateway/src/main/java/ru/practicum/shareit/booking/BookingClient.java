@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
@@ -11,7 +12,9 @@ import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.client.BaseClient;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -24,9 +27,14 @@ public class BookingClient extends BaseClient {
         super(builder.uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX)).requestFactory(HttpComponentsClientHttpRequestFactory::new).build());
     }
 
-    public ResponseEntity<Object> createBooking(Long bookerId, BookingDto bookingDto) {
+    public ResponseEntity<Object> createBooking(Long bookerId, String idempotencyKey, BookingDto bookingDto) {
         log.info("Запрос на создание брони");
-        return post("", bookerId, bookingDto);
+        return postIdempotent("", bookerId, idempotencyKey, bookingDto);
+    }
+
+    public ResponseEntity<Object> createBookings(Long bookerId, List<BookingDto> bookingDtos) {
+        log.info("Запрос на пакетное создание брони");
+        return post("/batch", bookerId, bookingDtos);
     }
 
     public ResponseEntity<Object> approveBooking(Long userId, Long bookingId, Boolean approved) {
@@ -34,27 +42,46 @@ public class BookingClient extends BaseClient {
         return patch("/" + bookingId + "?approved=" + approved, userId.longValue());
     }
 
+    public ResponseEntity<Object> approveBookings(Long userId, List<Long> ids, Boolean approved) {
+        log.info("Запрос на пакетное одобрение брони");
+        return patch("/batch?approved=" + approved, userId, ids);
+    }
+
     public ResponseEntity<Object> getBookingById(Long userId, Long bookingId) {
         log.info("Запрос на получение брони");
         return get("/" + bookingId, userId.longValue());
     }
 
-    public ResponseEntity<Object> findAllBookingsUser(Long userId, String status, int from, int size) {
+    public ResponseEntity<Object> findAllBookingsUser(Long userId, String status, int from, int size, String cursor) {
         Map<String, Object> parameter = new HashMap<>();
         parameter.put("from", from);
         parameter.put("size", size);
         parameter.put("state", status);
         log.info("Запрос на получение всей брони");
-        return get("?state={state}&from={from}&size={size}", userId.longValue(), parameter);
+        return get(withCursor("?state={state}&from={from}&size={size}", parameter, cursor), userId.longValue(), parameter);
     }
 
-    public ResponseEntity<Object> findAllBookingsOwner(Long userId, String status, int from, int size) {
+    public ResponseEntity<Object> findAllBookingsOwner(Long userId, String status, int from, int size, String cursor) {
         Map<String, Object> parameter = new HashMap<>();
         parameter.put("from", from);
         parameter.put("size", size);
         parameter.put("state", status);
         log.info("Запрос на получение всей брони");
-        return get("/owner?state={state}&from={from}&size={size}", userId.longValue(), parameter);
+        return get(withCursor("/owner?state={state}&from={from}&size={size}", parameter, cursor), userId.longValue(), parameter);
     }
 
-}
\ No newline at end of file
+    public ResponseEntity<Object> countBookingsUser(Long userId) {
+        log.info("Запрос на получение счётчиков брони");
+        return get("/stats", userId.longValue());
+    }
+
+    public ResponseEntity<Object> countBookingsOwner(Long userId) {
+        log.info("Запрос на получение счётчиков брони владельца");
+        return get("/owner/stats", userId.longValue());
+    }
+
+    public void exportBookings(Long userId, HttpServletResponse response) {
+        log.info("Запрос на выгрузку истории брони");
+        stream("/export", userId, MediaType.APPLICATION_NDJSON, response);
+    }
+}
@@ -9,8 +9,12 @@ import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.utils.Variables;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
 
 @Controller
 @RequestMapping(path = "/bookings")
@@ -22,9 +26,18 @@ public class BookingController {
 
     @PostMapping
     public ResponseEntity<Object> createBooking(@RequestHeader(value = Variables.USER_ID) Long bookerId,
+                                                @RequestHeader(value = Variables.IDEMPOTENCY_KEY, required = false)
+                                                @Size(max = 255) String idempotencyKey,
                                                 @Valid @RequestBody BookingDto bookingDto) {
         log.info("Запрос к клиенту на получение брони");
-        return bookingClient.createBooking(bookerId, bookingDto);
+        return bookingClient.createBooking(bookerId, idempotencyKey, bookingDto);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<Object> createBookings(@RequestHeader(value = Variables.USER_ID) Long bookerId,
+                                                 @RequestBody @NotEmpty @Size(max = 1000) List<@Valid BookingDto> bookingDtos) {
+        log.info("Запрос к клиенту на пакетное создание брони");
+        return bookingClient.createBookings(bookerId, bookingDtos);
     }
 
     @PatchMapping("/{bookingId}")
@@ -35,6 +48,14 @@ public class BookingController {
         return bookingClient.approveBooking(userId, bookingId, approved);
     }
 
+    @PatchMapping("/batch")
+    public ResponseEntity<Object> approveBookings(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                  @RequestParam(name = "approved") Boolean approved,
+                                                  @RequestBody @NotEmpty @Size(max = 1000) List<Long> ids) {
+        log.info("Запрос к клиенту на пакетное одобрение брони");
+        return bookingClient.approveBookings(userId, ids, approved);
+    }
+
     @GetMapping("/{bookingId}")
     public ResponseEntity<Object> getBookingById(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                  @PathVariable Long bookingId) {
@@ -47,18 +68,39 @@ public class BookingController {
     public ResponseEntity<Object> findAllBookingsUser(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                       @RequestParam(required = false, defaultValue = "ALL") String state,
                                                       @RequestParam(value = "from", defaultValue = "0") @Min(0) int from,
-                                                      @RequestParam(value = "size", defaultValue = "10") @Min(1) int size) {
+                                                      @RequestParam(value = "size", defaultValue = "10") @Min(1) int size,
+                                                      @RequestParam(value = "cursor", required = false) String cursor) {
         log.info("Запрос к клиенту на получение всей брони");
-        return bookingClient.findAllBookingsUser(userId, state, from, size);
+        return bookingClient.findAllBookingsUser(userId, state, from, size, cursor);
     }
 
     @GetMapping("/owner")
     public ResponseEntity<Object> findAllBookingsOwner(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                        @RequestParam(required = false, defaultValue = "ALL") String state,
                                                        @RequestParam(value = "from", defaultValue = "0") @Min(0) int from,
-                                                       @RequestParam(value = "size", defaultValue = "10") @Min(1) int size) {
+                                                       @RequestParam(value = "size", defaultValue = "10") @Min(1) int size,
+                                                       @RequestParam(value = "cursor", required = false) String cursor) {
         log.info("Запрос к клиенту на получение всей брони");
-        return bookingClient.findAllBookingsOwner(userId, state, from, size);
+        return bookingClient.findAllBookingsOwner(userId, state, from, size, cursor);
+    }
+
+    @GetMapping("/export")
+    public void exportBookings(@RequestHeader(value = Variables.USER_ID) Long userId,
+                               HttpServletResponse response) {
+        log.info("Запрос к клиенту на выгрузку истории брони");
+        bookingClient.exportBookings(userId, response);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Object> countBookingsUser(@RequestHeader(value = Variables.USER_ID) Long userId) {
+        log.info("Запрос к клиенту на получение счётчиков брони");
+        return bookingClient.countBookingsUser(userId);
+    }
+
+    @GetMapping("/owner/stats")
+    public ResponseEntity<Object> countBookingsOwner(@RequestHeader(value = Variables.USER_ID) Long userId) {
+        log.info("Запрос к клиенту на получение счётчиков брони владельца");
+        return bookingClient.countBookingsOwner(userId);
     }
 
 }
@@ -1,5 +1,8 @@
 package ru.practicum.shareit.client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -9,8 +12,12 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
+import ru.practicum.shareit.utils.Variables;
+
+import javax.servlet.http.HttpServletResponse;
 
 public class BaseClient {
     protected final RestTemplate rest;
@@ -43,6 +50,17 @@ public class BaseClient {
         return makeAndSendRequest(HttpMethod.POST, path, userId, parameters, body);
     }
 
+    /**
+     * POST с заголовком Idempotency-Key: сервер вернёт сохранённый результат на повтор запроса с тем же ключом.
+     */
+    protected <T> ResponseEntity<Object> postIdempotent(String path, long userId, @Nullable String idempotencyKey, T body) {
+        HttpHeaders headers = defaultHeaders(userId);
+        if (idempotencyKey != null) {
+            headers.set(Variables.IDEMPOTENCY_KEY, idempotencyKey);
+        }
+        return makeAndSendRequest(HttpMethod.POST, path, null, body, headers);
+    }
+
     protected <T> ResponseEntity<Object> put(String path, long userId, T body) {
         return put(path, userId, null, body);
     }
@@ -79,8 +97,62 @@ public class BaseClient {
         return makeAndSendRequest(HttpMethod.DELETE, path, userId, parameters, null);
     }
 
+    /**
+     * POST с телом из входного потока без буферизации; нужна небуферизующая фабрика запросов.
+     */
+    protected ResponseEntity<Object> upload(String path, long userId, MediaType contentType, InputStream body) {
+        HttpHeaders headers = defaultHeaders(userId);
+        headers.setContentType(contentType);
+        try {
+            return prepareGatewayResponse(rest.execute(path, HttpMethod.POST, request -> {
+                request.getHeaders().addAll(headers);
+                StreamUtils.copy(body, request.getBody());
+            }, rest.responseEntityExtractor(Object.class)));
+        } catch (HttpStatusCodeException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+        }
+    }
+
+    /**
+     * Передаёт тело ответа сервера клиенту по мере получения, не буферизуя его целиком.
+     */
+    protected void stream(String path, long userId, MediaType mediaType, HttpServletResponse response) {
+        HttpHeaders headers = defaultHeaders(userId);
+        headers.setAccept(List.of(mediaType));
+        try {
+            rest.execute(path, HttpMethod.GET, request -> request.getHeaders().addAll(headers), serverResponse -> {
+                response.setStatus(serverResponse.getRawStatusCode());
+                MediaType contentType = serverResponse.getHeaders().getContentType();
+                if (contentType != null) {
+                    response.setContentType(contentType.toString());
+                }
+                StreamUtils.copy(serverResponse.getBody(), response.getOutputStream());
+                return null;
+            });
+        } catch (HttpStatusCodeException e) {
+            response.setStatus(e.getRawStatusCode());
+            try {
+                StreamUtils.copy(e.getResponseBodyAsByteArray(), response.getOutputStream());
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+    }
+
+    protected static String withCursor(String path, Map<String, Object> parameters, @Nullable String cursor) {
+        if (cursor == null) {
+            return path;
+        }
+        parameters.put("cursor", cursor);
+        return path + "&cursor={cursor}";
+    }
+
     private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, Long userId, @Nullable Map<String, Object> parameters, @Nullable T body) {
-        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders(userId));
+        return makeAndSendRequest(method, path, parameters, body, defaultHeaders(userId));
+    }
+
+    private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path, @Nullable Map<String, Object> parameters, @Nullable T body, HttpHeaders headers) {
+        HttpEntity<T> requestEntity = new HttpEntity<>(body, headers);
 
         ResponseEntity<Object> shareitServerResponse;
         try {
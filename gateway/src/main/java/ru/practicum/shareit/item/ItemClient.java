@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
@@ -12,7 +13,12 @@ import ru.practicum.shareit.client.BaseClient;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -21,17 +27,39 @@ public class ItemClient extends BaseClient {
 
     @Autowired
     public ItemClient(@Value("${shareit-server.url}") String serverUrl, RestTemplateBuilder builder) {
-        super(builder.uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX)).requestFactory(HttpComponentsClientHttpRequestFactory::new).build());
+        super(builder.uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_PREFIX)).requestFactory(ItemClient::streamingRequestFactory).build());
     }
 
-    public ResponseEntity<Object> findAllItemsUser(Long userId) {
+    private static HttpComponentsClientHttpRequestFactory streamingRequestFactory() {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
+        requestFactory.setBufferRequestBody(false);
+        return requestFactory;
+    }
+
+    public ResponseEntity<Object> findAllItemsUser(Long userId, int from, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("from", from);
+        parameters.put("size", size);
         log.info("Запрос на получение всех предметов");
-        return get("", userId);
+        return get(withCursor("?from={from}&size={size}", parameters, cursor), userId, parameters);
+    }
+
+    public ResponseEntity<Object> getItems(Long userId, List<Long> ids) {
+        Map<String, Object> parameters = Map.of(
+                "ids", ids.stream().map(String::valueOf).collect(Collectors.joining(","))
+        );
+        log.info("Запрос на получение предметов по списку Id");
+        return get("?ids={ids}", userId, parameters);
     }
 
-    public ResponseEntity<Object> createItem(Long userId, ItemDto itemDto) {
+    public ResponseEntity<Object> createItem(Long userId, String idempotencyKey, ItemDto itemDto) {
         log.info("Запрос на создание предмета");
-        return post("", userId, itemDto);
+        return postIdempotent("", userId, idempotencyKey, itemDto);
+    }
+
+    public ResponseEntity<Object> importItems(Long userId, MediaType contentType, InputStream body) {
+        log.info("Запрос на импорт предметов");
+        return upload("/import", userId, contentType, body);
     }
 
     public ResponseEntity<Object> updateItem(Long userId, Long id, ItemDto itemDto) {
@@ -44,16 +72,53 @@ public class ItemClient extends BaseClient {
         return get("/" + id, userId);
     }
 
-    public ResponseEntity<Object> search(Long userId, String text) {
+    public ResponseEntity<Object> search(Long userId, String text, int from, int size) {
         Map<String, Object> parameters = Map.of(
-                "text", text
+                "text", text,
+                "from", from,
+                "size", size
         );
         log.info("Запрос на поиск");
-        return get("/search?text={text}", userId, parameters);
+        return get("/search?text={text}&from={from}&size={size}", userId, parameters);
+    }
+
+    public ResponseEntity<Object> suggest(Long userId, String prefix, int limit) {
+        Map<String, Object> parameters = Map.of(
+                "prefix", prefix,
+                "limit", limit
+        );
+        log.info("Запрос на подсказки поиска");
+        return get("/suggest?prefix={prefix}&limit={limit}", userId, parameters);
+    }
+
+    public ResponseEntity<Object> getAvailability(Long userId, Long itemId, LocalDateTime from, LocalDateTime to) {
+        Map<String, Object> parameters = Map.of(
+                "from", from,
+                "to", to
+        );
+        log.info("Запрос на получение свободных дат предмета");
+        return get("/" + itemId + "/availability?from={from}&to={to}", userId, parameters);
+    }
+
+    public ResponseEntity<Object> getAvailability(Long userId, List<Long> itemIds, LocalDateTime from, LocalDateTime to) {
+        Map<String, Object> parameters = Map.of(
+                "ids", itemIds.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                "from", from,
+                "to", to
+        );
+        log.info("Запрос на получение свободных дат предметов");
+        return get("/availability?ids={ids}&from={from}&to={to}", userId, parameters);
     }
 
     public ResponseEntity<Object> createComment(Long authorId, Long itemId, CommentDto commentDto) {
         log.info("Запрос на добавление комментария");
         return post("/" + itemId + "/comment", authorId, commentDto);
     }
+
+    public ResponseEntity<Object> getComments(Long userId, Long itemId, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("size", size);
+        log.info("Запрос на получение отзывов о предмете");
+        return get(withCursor("/" + itemId + "/comments?size={size}", parameters, cursor), userId, parameters);
+    }
 }
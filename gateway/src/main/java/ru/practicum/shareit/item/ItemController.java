@@ -2,6 +2,8 @@ package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
@@ -10,7 +12,15 @@ import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.utils.Variables;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Controller
 @RequestMapping(path = "/items")
@@ -21,16 +31,36 @@ public class ItemController {
     private final ItemClient itemClient;
 
     @GetMapping
-    public ResponseEntity<Object> findAllItemsUser(@RequestHeader(value = Variables.USER_ID) Long userId) {
+    public ResponseEntity<Object> findAllItemsUser(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                   @RequestParam(value = "from", defaultValue = "0") @Min(0) int from,
+                                                   @RequestParam(value = "size", defaultValue = "10") @Min(1) int size,
+                                                   @RequestParam(value = "cursor", required = false) String cursor) {
         log.info("Запрос к клиенту на получение всех предметов");
-        return itemClient.findAllItemsUser(userId);
+        return itemClient.findAllItemsUser(userId, from, size, cursor);
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<Object> getItems(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                           @RequestParam("ids") @NotEmpty @Size(max = 100) List<Long> ids) {
+        log.info("Запрос к клиенту на получение предметов по списку Id");
+        return itemClient.getItems(userId, ids);
     }
 
     @PostMapping
     public ResponseEntity<Object> createItem(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                             @RequestHeader(value = Variables.IDEMPOTENCY_KEY, required = false)
+                                             @Size(max = 255) String idempotencyKey,
                                              @RequestBody @Valid ItemDto itemDto) {
         log.info("Запрос к клиенту на создание предмета");
-        return itemClient.createItem(userId, itemDto);
+        return itemClient.createItem(userId, idempotencyKey, itemDto);
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<Object> importItems(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                              HttpServletRequest request) throws IOException {
+        log.info("Запрос к клиенту на импорт предметов");
+        return itemClient.importItems(userId, MediaType.parseMediaType(request.getContentType()),
+                request.getInputStream());
     }
 
     @PatchMapping("/{itemId}")
@@ -50,9 +80,37 @@ public class ItemController {
 
     @GetMapping("/search")
     public ResponseEntity<Object> search(@RequestHeader(value = Variables.USER_ID) Long userId,
-                                         @RequestParam("text") String text) {
+                                         @RequestParam("text") String text,
+                                         @RequestParam(value = "from", defaultValue = "0") @Min(0) int from,
+                                         @RequestParam(value = "size", defaultValue = "10") @Min(1) int size) {
         log.info("Запрос к клиенту на поиск");
-        return itemClient.search(userId, text);
+        return itemClient.search(userId, text, from, size);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<Object> suggest(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                          @RequestParam("prefix") String prefix,
+                                          @RequestParam(value = "limit", defaultValue = "10") @Min(1) @Max(100) int limit) {
+        log.info("Запрос к клиенту на подсказки поиска");
+        return itemClient.suggest(userId, prefix, limit);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public ResponseEntity<Object> getAvailability(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                  @PathVariable Long itemId,
+                                                  @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                  @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Запрос к клиенту на получение свободных дат предмета");
+        return itemClient.getAvailability(userId, itemId, from, to);
+    }
+
+    @GetMapping("/availability")
+    public ResponseEntity<Object> getAvailability(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                  @RequestParam("ids") @NotEmpty @Size(max = 100) List<Long> itemIds,
+                                                  @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                  @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Запрос к клиенту на получение свободных дат предметов");
+        return itemClient.getAvailability(userId, itemIds, from, to);
     }
 
     @PostMapping("/{itemId}/comment")
@@ -62,4 +120,13 @@ public class ItemController {
         log.info("Запрос к клиенту на добавление комментария");
         return itemClient.createComment(authorId, itemId, commentDto);
     }
+
+    @GetMapping("/{itemId}/comments")
+    public ResponseEntity<Object> getComments(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                              @PathVariable Long itemId,
+                                              @RequestParam(value = "size", defaultValue = "10") @Min(1) @Max(100) int size,
+                                              @RequestParam(value = "cursor", required = false) String cursor) {
+        log.info("Запрос к клиенту на получение отзывов о предмете");
+        return itemClient.getComments(userId, itemId, size, cursor);
+    }
 }
@@ -11,6 +11,7 @@ import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.shareit.client.BaseClient;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @Service
@@ -38,11 +39,11 @@ public class ItemRequestClient extends BaseClient {
         return get("/" + requestId, userId);
     }
 
-    public ResponseEntity<Object> findAllRequests(Long userId, int from, int size) {
-        Map<String, Object> parameters = Map.of(
-                "from", from,
-                "size", size);
+    public ResponseEntity<Object> findAllRequests(Long userId, int from, int size, String cursor) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("from", from);
+        parameters.put("size", size);
         log.info("Запрос на получение всех запросов");
-        return get("/all?from={from}&size={size}", userId, parameters);
+        return get(withCursor("/all?from={from}&size={size}", parameters, cursor), userId, parameters);
     }
 }
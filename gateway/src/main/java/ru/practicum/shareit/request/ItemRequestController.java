@@ -10,6 +10,7 @@ import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.utils.Variables;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 
 @Controller
 @RequestMapping(path = "/requests")
@@ -42,9 +43,10 @@ public class ItemRequestController {
 
     @GetMapping("/all")
     public ResponseEntity<Object> findAllRequests(@RequestHeader(value = Variables.USER_ID) Long userId,
-                                                  @RequestParam(value = "from", defaultValue = "0") int from,
-                                                  @RequestParam(value = "size", defaultValue = "10") int size) {
+                                                  @RequestParam(value = "from", defaultValue = "0") @Min(0) int from,
+                                                  @RequestParam(value = "size", defaultValue = "10") @Min(1) int size,
+                                                  @RequestParam(value = "cursor", required = false) String cursor) {
         log.info("Запрос к клиенту на получение всех запросов");
-        return itemRequestClient.findAllRequests(userId, from, size);
+        return itemRequestClient.findAllRequests(userId, from, size, cursor);
     }
 }
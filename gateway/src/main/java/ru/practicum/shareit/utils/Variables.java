@@ -2,4 +2,5 @@ package ru.practicum.shareit.utils;
 
 public class Variables {
         public static final String USER_ID = "X-Sharer-User-Id";
+        public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 }
@@ -0,0 +1,74 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переносит в bookings_archive давно завершившиеся брони; пачка копируется и удаляется в одной транзакции.
+ */
+@Component
+@Slf4j
+public class BookingArchiveJob {
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int afterDays;
+    private final int batchSize;
+    private final Counter archivedCounter;
+    private final Timer runTimer;
+
+    public BookingArchiveJob(BookingRepository bookingRepository,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${shareit.booking-archive.after-days:90}") int afterDays,
+                             @Value("${shareit.booking-archive.batch-size:500}") int batchSize) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+        this.archivedCounter = meterRegistry.counter("shareit.bookings.archived");
+        this.runTimer = meterRegistry.timer("shareit.bookings.archive.run");
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking-archive.delay:3600000}",
+            initialDelayString = "${shareit.booking-archive.delay:3600000}")
+    public void archiveFinishedBookings() {
+        runTimer.record(() -> {
+            LocalDateTime before = LocalDateTime.now().minusDays(afterDays);
+            int total = 0;
+            int archived;
+            do {
+                archived = archiveBatch(before);
+                total += archived;
+            } while (archived == batchSize);
+            if (total > 0) {
+                log.info("Перенесено в архив {} завершённых броней", total);
+            }
+        });
+    }
+
+    private int archiveBatch(LocalDateTime before) {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> locked = bookingRepository.lockArchivable(before, PageRequest.of(0, batchSize));
+            if (!locked.isEmpty()) {
+                bookingRepository.copyToArchive(locked);
+                bookingRepository.deleteArchived(locked);
+            }
+            return locked;
+        });
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        archivedCounter.increment(ids.size());
+        return ids.size();
+    }
+}
@@ -3,12 +3,21 @@ package ru.practicum.shareit.booking;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingResultDto;
+import ru.practicum.shareit.utils.IdempotencyStore;
+import ru.practicum.shareit.utils.PageCursor;
 import ru.practicum.shareit.utils.Variables;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
@@ -17,12 +26,22 @@ import java.util.List;
 @Validated
 public class BookingController {
     private final BookingService bookingService;
+    private final IdempotencyStore idempotencyStore;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BookingDto createBooking(@RequestHeader(value = Variables.USER_ID) Long bookerId,
+                                    @RequestHeader(value = Variables.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
                                     @RequestBody BookingDto bookingDto) {
-        return bookingService.createBooking(bookerId, bookingDto);
+        return idempotencyStore.execute("bookings", bookerId, idempotencyKey, bookingDto,
+                () -> bookingService.createBooking(bookerId, bookingDto));
+    }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public List<BookingResultDto> createBookings(@RequestHeader(value = Variables.USER_ID) Long bookerId,
+                                                 @RequestBody List<BookingDto> bookingDtos) {
+        return bookingService.createBookings(bookerId, bookingDtos);
     }
 
     @PatchMapping("/{bookingId}")
@@ -33,6 +52,14 @@ public class BookingController {
         return bookingService.approveBooking(userId, id, approved);
     }
 
+    @PatchMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public List<BookingDecisionDto> approveBookings(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                    @RequestParam("approved") Boolean approved,
+                                                    @RequestBody List<Long> ids) {
+        return bookingService.approveBookings(userId, ids, approved);
+    }
+
     @GetMapping("/{bookingId}")
     @ResponseStatus(HttpStatus.OK)
     public BookingDto getBookingById(@RequestHeader(value = Variables.USER_ID) Long userId,
@@ -45,8 +72,12 @@ public class BookingController {
     public List<BookingDto> findAllBookingsUser(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                 @RequestParam(required = false, defaultValue = "ALL") String state,
                                                 @RequestParam(value = "from", defaultValue = "0") int from,
-                                                @RequestParam(value = "size", defaultValue = "10") int size) {
-        return bookingService.findAllBookings(userId, state, from, size);
+                                                @RequestParam(value = "size", defaultValue = "10") int size,
+                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                HttpServletResponse response) {
+        List<BookingDto> bookings = bookingService.findAllBookings(userId, state, from, size, cursor);
+        setNextCursor(response, bookings, size);
+        return bookings;
     }
 
     @GetMapping("/owner")
@@ -54,7 +85,38 @@ public class BookingController {
     public List<BookingDto> findAllBookingsOwner(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                  @RequestParam(required = false, defaultValue = "ALL") String state,
                                                  @RequestParam(value = "from", defaultValue = "0") int from,
-                                                 @RequestParam(value = "size", defaultValue = "10") int size) {
-        return bookingService.findAllBookingsOwner(userId, state, from, size);
+                                                 @RequestParam(value = "size", defaultValue = "10") int size,
+                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                 HttpServletResponse response) {
+        List<BookingDto> bookings = bookingService.findAllBookingsOwner(userId, state, from, size, cursor);
+        setNextCursor(response, bookings, size);
+        return bookings;
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportBookings(@RequestHeader(value = Variables.USER_ID) Long userId,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        bookingService.exportBookings(userId, response.getOutputStream());
+    }
+
+    @GetMapping("/stats")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<State, Long> countBookingsUser(@RequestHeader(value = Variables.USER_ID) Long userId) {
+        return bookingService.countBookings(userId);
+    }
+
+    @GetMapping("/owner/stats")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<State, Long> countBookingsOwner(@RequestHeader(value = Variables.USER_ID) Long userId) {
+        return bookingService.countBookingsOwner(userId);
+    }
+
+    private void setNextCursor(HttpServletResponse response, List<BookingDto> bookings, int size) {
+        String next = PageCursor.next(bookings, size, booking -> new PageCursor(booking.getStart(), booking.getId()));
+        if (next != null) {
+            response.setHeader(Variables.NEXT_CURSOR, next);
+        }
     }
 }
@@ -0,0 +1,75 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переводит в EXPIRED нерассмотренные брони, начало которых наступило. Пачки берутся через
+ * FOR UPDATE SKIP LOCKED, поэтому задачу могут выполнять несколько экземпляров сервера.
+ */
+@Component
+@Slf4j
+public class BookingExpiryJob {
+    private final BookingRepository bookingRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter expiredCounter;
+    private final Timer runTimer;
+
+    public BookingExpiryJob(BookingRepository bookingRepository,
+                            BookingIntervalIndex bookingIntervalIndex,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.booking-expiry.batch-size:500}") int batchSize) {
+        this.bookingRepository = bookingRepository;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.expiredCounter = meterRegistry.counter("shareit.bookings.expired");
+        this.runTimer = meterRegistry.timer("shareit.bookings.expiry.run");
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking-expiry.delay:60000}",
+            initialDelayString = "${shareit.booking-expiry.delay:60000}")
+    public void expireStaleBookings() {
+        runTimer.record(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            int total = 0;
+            int expired;
+            do {
+                expired = expireBatch(now);
+                total += expired;
+            } while (expired == batchSize);
+            if (total > 0) {
+                log.info("Просрочено {} неподтверждённых броней", total);
+            }
+        });
+    }
+
+    private int expireBatch(LocalDateTime now) {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> locked = bookingRepository.lockStaleWaiting(now, PageRequest.of(0, batchSize));
+            if (!locked.isEmpty()) {
+                bookingRepository.expireWaiting(locked);
+            }
+            return locked;
+        });
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        bookingIntervalIndex.release(ids);
+        expiredCounter.increment(ids.size());
+        return ids.size();
+    }
+}
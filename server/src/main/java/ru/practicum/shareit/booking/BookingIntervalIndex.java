@@ -0,0 +1,246 @@
+package ru.practicum.shareit.booking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.item.ItemRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Интервалы активных (WAITING и APPROVED) броней по вещам. Проверяемый диапазон сверяется с bookings
+ * под блокировкой строки вещи, поэтому учитываются и брони других экземпляров сервера.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingIntervalIndex {
+    private static final List<String> ACTIVE_STATUSES = List.of(String.valueOf(Status.WAITING), String.valueOf(Status.APPROVED));
+
+    private final BookingRepository bookingRepository;
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, ItemTimeline> timelines = new ConcurrentHashMap<>();
+    private final Map<Long, Long> itemByBooking = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        timelines.clear();
+        itemByBooking.clear();
+        List<BookingInterval> intervals = bookingRepository.findIntervalsByStatusInAndEndAfter(ACTIVE_STATUSES,
+                LocalDateTime.now());
+        intervals.forEach(interval -> timeline(interval.getItemId())
+                .add(new Slot(interval.getId(), interval.getStart(), interval.getEnd())));
+        log.info("Индекс бронирований восстановлен: {} интервалов, {} вещей", intervals.size(), timelines.size());
+    }
+
+    /**
+     * Сохраняет бронь, если она неактивна или не пересекается с активными бронями той же вещи.
+     */
+    public Booking write(Booking booking, UnaryOperator<Booking> writer) {
+        Long itemId = booking.getItem().getId();
+        ItemTimeline timeline = timeline(itemId);
+        timeline.lock.lock();
+        try {
+            boolean active = ACTIVE_STATUSES.contains(booking.getStatus());
+            Booking saved = transactionTemplate.execute(status -> {
+                if (active) {
+                    itemRepository.lockByIdIn(List.of(itemId));
+                    syncRange(List.of(itemId), booking.getStart(), booking.getEnd());
+                    if (timeline.overlaps(booking.getStart(), booking.getEnd(), booking.getId())) {
+                        log.warn("Бронь пересекается с существующей");
+                        throw new ConflictException("Вещь уже забронирована на это время");
+                    }
+                }
+                return writer.apply(booking);
+            });
+            timeline.remove(saved.getId());
+            if (active) {
+                timeline.add(new Slot(saved.getId(), saved.getStart(), saved.getEnd()));
+            }
+            return saved;
+        } finally {
+            timeline.lock.unlock();
+        }
+    }
+
+    /**
+     * Брони, пересекающиеся с существующими или с предыдущими в пакете, передаются в onConflict.
+     */
+    public List<Booking> writeAll(List<Booking> bookings, UnaryOperator<List<Booking>> writer,
+                                  Consumer<Booking> onConflict) {
+        if (bookings.isEmpty()) {
+            return List.of();
+        }
+        List<Long> itemIds = bookings.stream()
+                .map(booking -> booking.getItem().getId())
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        List<ItemTimeline> locked = itemIds.stream().map(this::timeline).collect(Collectors.toList());
+        locked.forEach(timeline -> timeline.lock.lock());
+        try {
+            List<Booking> saved = transactionTemplate.execute(status -> {
+                itemRepository.lockByIdIn(itemIds);
+                syncRange(itemIds,
+                        bookings.stream().map(Booking::getStart).min(Comparator.naturalOrder()).orElseThrow(),
+                        bookings.stream().map(Booking::getEnd).max(Comparator.naturalOrder()).orElseThrow());
+                // брони пакета, прошедшие проверку; в индекс они попадают только после записи
+                Map<Long, List<Booking>> pending = new HashMap<>();
+                List<Booking> accepted = new ArrayList<>();
+                for (Booking booking : bookings) {
+                    List<Booking> sameItem = pending.computeIfAbsent(booking.getItem().getId(), id -> new ArrayList<>());
+                    if (timeline(booking.getItem().getId()).overlaps(booking.getStart(), booking.getEnd(), null)
+                            || sameItem.stream().anyMatch(other -> other.getStart().isBefore(booking.getEnd())
+                            && other.getEnd().isAfter(booking.getStart()))) {
+                        onConflict.accept(booking);
+                    } else {
+                        sameItem.add(booking);
+                        accepted.add(booking);
+                    }
+                }
+                return accepted.isEmpty() ? List.<Booking>of() : writer.apply(accepted);
+            });
+            saved.forEach(booking -> timeline(booking.getItem().getId())
+                    .add(new Slot(booking.getId(), booking.getStart(), booking.getEnd())));
+            return saved;
+        } finally {
+            locked.forEach(timeline -> timeline.lock.unlock());
+        }
+    }
+
+    /**
+     * Убирает из индекса брони, которые уже переведены в БД в неактивный статус.
+     */
+    public void release(Collection<Long> bookingIds) {
+        bookingIds.forEach(bookingId -> {
+            Long itemId = itemByBooking.get(bookingId);
+            if (itemId == null) {
+                return;
+            }
+            ItemTimeline timeline = timeline(itemId);
+            timeline.lock.lock();
+            try {
+                timeline.remove(bookingId);
+            } finally {
+                timeline.lock.unlock();
+            }
+        });
+    }
+
+    // вызывается под блокировкой вещей: интервалы из БД заменяют содержимое индекса в диапазоне
+    private void syncRange(Collection<Long> itemIds, LocalDateTime from, LocalDateTime to) {
+        Map<Long, List<BookingInterval>> intervals = bookingRepository.findIntervalsInRange(itemIds, ACTIVE_STATUSES,
+                        from, to).stream()
+                .collect(Collectors.groupingBy(BookingInterval::getItemId));
+        itemIds.forEach(itemId -> timeline(itemId).sync(from, to, intervals.getOrDefault(itemId, List.of())));
+    }
+
+    private ItemTimeline timeline(Long itemId) {
+        return timelines.computeIfAbsent(itemId, id -> new ItemTimeline(id, itemByBooking));
+    }
+
+    private static class Slot {
+        private static final Comparator<Slot> ORDER = Comparator.comparing((Slot slot) -> slot.start)
+                .thenComparing(slot -> slot.bookingId);
+
+        private final Long bookingId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        Slot(Long bookingId, LocalDateTime start, LocalDateTime end) {
+            this.bookingId = bookingId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Пересекающийся с [start, end) интервал начинается не раньше start - maxDuration.
+     */
+    private static class ItemTimeline {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final NavigableSet<Slot> slots = new TreeSet<>(Slot.ORDER);
+        private final Map<Long, Slot> byBooking = new HashMap<>();
+        private final Long itemId;
+        private final Map<Long, Long> itemByBooking;
+        private Duration maxDuration = Duration.ZERO;
+
+        ItemTimeline(Long itemId, Map<Long, Long> itemByBooking) {
+            this.itemId = itemId;
+            this.itemByBooking = itemByBooking;
+        }
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end, Long exceptBookingId) {
+            Slot from = new Slot(Long.MIN_VALUE, start.minus(maxDuration), null);
+            Slot to = new Slot(Long.MIN_VALUE, end, null);
+            for (Slot slot : slots.subSet(from, true, to, false)) {
+                if (slot.end.isAfter(start) && !slot.bookingId.equals(exceptBookingId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void sync(LocalDateTime start, LocalDateTime end, List<BookingInterval> intervals) {
+            Set<Long> actual = intervals.stream().map(BookingInterval::getId).collect(Collectors.toSet());
+            List<Long> stale = new ArrayList<>();
+            Slot from = new Slot(Long.MIN_VALUE, start.minus(maxDuration), null);
+            Slot to = new Slot(Long.MIN_VALUE, end, null);
+            for (Slot slot : slots.subSet(from, true, to, false)) {
+                if (slot.end.isAfter(start) && !actual.contains(slot.bookingId)) {
+                    stale.add(slot.bookingId);
+                }
+            }
+            stale.forEach(this::remove);
+            intervals.forEach(interval -> {
+                remove(interval.getId());
+                add(new Slot(interval.getId(), interval.getStart(), interval.getEnd()));
+            });
+        }
+
+        void add(Slot slot) {
+            slots.add(slot);
+            byBooking.put(slot.bookingId, slot);
+            itemByBooking.put(slot.bookingId, itemId);
+            Duration duration = Duration.between(slot.start, slot.end);
+            if (duration.compareTo(maxDuration) > 0) {
+                maxDuration = duration;
+            }
+            pruneFinished();
+        }
+
+        void remove(Long bookingId) {
+            Slot slot = byBooking.remove(bookingId);
+            if (slot != null) {
+                slots.remove(slot);
+                itemByBooking.remove(bookingId);
+            }
+        }
+
+        private void pruneFinished() {
+            LocalDateTime now = LocalDateTime.now();
+            while (!slots.isEmpty() && slots.first().end.isBefore(now)) {
+                remove(slots.first().bookingId);
+            }
+        }
+    }
+}
@@ -1,20 +1,246 @@
 package ru.practicum.shareit.booking;
 
+import org.hibernate.LockOptions;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import ru.practicum.shareit.user.User;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
-    List<Booking> findByBookerOrderByStartDesc(User booker, Pageable page);
+    List<Booking> findByBookerIdAndStartBeforeAndEndAfterOrderByStartDescIdDesc(Long bookerId, LocalDateTime start,
+                                                                                LocalDateTime end, Pageable page);
+
+    List<Booking> findByBookerIdAndStartAfterOrderByStartDescIdDesc(Long bookerId, LocalDateTime start, Pageable page);
+
+    List<Booking> findByBookerIdAndStatusOrderByStartDescIdDesc(Long bookerId, String status, Pageable page);
+
+    List<Booking> findByItemOwnerIdAndStartBeforeAndEndAfterOrderByStartDescIdDesc(Long ownerId, LocalDateTime start,
+                                                                                   LocalDateTime end, Pageable page);
+
+    List<Booking> findByItemOwnerIdAndStartAfterOrderByStartDescIdDesc(Long ownerId, LocalDateTime start, Pageable page);
+
+    List<Booking> findByItemOwnerIdAndStatusOrderByStartDescIdDesc(Long ownerId, String status, Pageable page);
+
+    String BOOKER_AFTER_CURSOR = "select b from Booking b where b.booker.id = :userId " +
+            "and (b.start < :start or (b.start = :start and b.id < :id)) ";
+
+    String OWNER_AFTER_CURSOR = "select b from Booking b where b.item.owner.id = :userId " +
+            "and (b.start < :start or (b.start = :start and b.id < :id)) ";
+
+    String ORDER_BY_START_DESC = "order by b.start desc, b.id desc";
+
+    @Query(BOOKER_AFTER_CURSOR + "and b.start < :now and b.end > :now " + ORDER_BY_START_DESC)
+    List<Booking> findBookerCurrentAfter(@Param("userId") Long bookerId, @Param("now") LocalDateTime now,
+                                         @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    @Query(BOOKER_AFTER_CURSOR + "and b.start > :now " + ORDER_BY_START_DESC)
+    List<Booking> findBookerFutureAfter(@Param("userId") Long bookerId, @Param("now") LocalDateTime now,
+                                        @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    @Query(BOOKER_AFTER_CURSOR + "and b.status = :status " + ORDER_BY_START_DESC)
+    List<Booking> findBookerByStatusAfter(@Param("userId") Long bookerId, @Param("status") String status,
+                                          @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    @Query(OWNER_AFTER_CURSOR + "and b.start < :now and b.end > :now " + ORDER_BY_START_DESC)
+    List<Booking> findOwnerCurrentAfter(@Param("userId") Long ownerId, @Param("now") LocalDateTime now,
+                                        @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    @Query(OWNER_AFTER_CURSOR + "and b.start > :now " + ORDER_BY_START_DESC)
+    List<Booking> findOwnerFutureAfter(@Param("userId") Long ownerId, @Param("now") LocalDateTime now,
+                                       @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    @Query(OWNER_AFTER_CURSOR + "and b.status = :status " + ORDER_BY_START_DESC)
+    List<Booking> findOwnerByStatusAfter(@Param("userId") Long ownerId, @Param("status") String status,
+                                         @Param("start") LocalDateTime start, @Param("id") Long id, Pageable page);
+
+    String HISTORY = "select b.* from (" +
+            "select id, start_date, end_date, item_id, booker_id, status, version from bookings union all " +
+            "select id, start_date, end_date, item_id, booker_id, status, version from bookings_archive) b ";
+
+    String BOOKER_HISTORY = HISTORY + "where b.booker_id = :userId ";
+
+    String OWNER_HISTORY = HISTORY + "join items i on i.id = b.item_id where i.owner_id = :userId ";
+
+    String HISTORY_AFTER_CURSOR = "and (b.start_date < :start or (b.start_date = :start and b.id < :id)) ";
+
+    String HISTORY_ORDER = "order by b.start_date desc, b.id desc";
+
+    @Query(nativeQuery = true, value = BOOKER_HISTORY + HISTORY_ORDER)
+    List<Booking> findBookerHistory(@Param("userId") Long bookerId, Pageable page);
+
+    @Query(nativeQuery = true, value = BOOKER_HISTORY + "and b.end_date < :now " + HISTORY_ORDER)
+    List<Booking> findBookerPastHistory(@Param("userId") Long bookerId, @Param("now") LocalDateTime now,
+                                        Pageable page);
+
+    @Query(nativeQuery = true, value = BOOKER_HISTORY + HISTORY_AFTER_CURSOR + HISTORY_ORDER)
+    List<Booking> findBookerHistoryAfter(@Param("userId") Long bookerId, @Param("start") LocalDateTime start,
+                                         @Param("id") Long id, Pageable page);
+
+    @Query(nativeQuery = true, value = BOOKER_HISTORY + "and b.end_date < :now " + HISTORY_AFTER_CURSOR + HISTORY_ORDER)
+    List<Booking> findBookerPastHistoryAfter(@Param("userId") Long bookerId, @Param("now") LocalDateTime now,
+                                             @Param("start") LocalDateTime start, @Param("id") Long id,
+                                             Pageable page);
+
+    @Query(nativeQuery = true, value = OWNER_HISTORY + HISTORY_ORDER)
+    List<Booking> findOwnerHistory(@Param("userId") Long ownerId, Pageable page);
+
+    @Query(nativeQuery = true, value = OWNER_HISTORY + "and b.end_date < :now " + HISTORY_ORDER)
+    List<Booking> findOwnerPastHistory(@Param("userId") Long ownerId, @Param("now") LocalDateTime now,
+                                       Pageable page);
+
+    @Query(nativeQuery = true, value = OWNER_HISTORY + HISTORY_AFTER_CURSOR + HISTORY_ORDER)
+    List<Booking> findOwnerHistoryAfter(@Param("userId") Long ownerId, @Param("start") LocalDateTime start,
+                                        @Param("id") Long id, Pageable page);
 
-    @Query(nativeQuery = true, value = "select * from bookings where item_id = ?1 order by start_date desc")
-    List<Booking> findByItemIdOrderByStartDesc(Long itemId, Pageable page);
+    @Query(nativeQuery = true, value = OWNER_HISTORY + "and b.end_date < :now " + HISTORY_AFTER_CURSOR + HISTORY_ORDER)
+    List<Booking> findOwnerPastHistoryAfter(@Param("userId") Long ownerId, @Param("now") LocalDateTime now,
+                                            @Param("start") LocalDateTime start, @Param("id") Long id,
+                                            Pageable page);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(nativeQuery = true, value = "select b.id as id, b.start_date as start, b.end_date as \"end\", " +
+            "b.status as status, i.id as itemId, i.name as itemName, i.description as itemDescription, " +
+            "i.available as itemAvailable, i.request_id as itemRequestId from (" +
+            "select id, start_date, end_date, item_id, booker_id, status from bookings union all " +
+            "select id, start_date, end_date, item_id, booker_id, status from bookings_archive) b " +
+            "join items i on i.id = b.item_id where b.booker_id = :userId " + HISTORY_ORDER)
+    Stream<BookingExportRow> streamExportByBookerId(@Param("userId") Long bookerId);
+
+    @Query(nativeQuery = true, value = "select count(*) from bookings_archive where booker_id = ?1")
+    long countArchivedByBookerId(Long bookerId);
+
+    @Query(nativeQuery = true, value = "select count(*) from bookings_archive a join items i on i.id = a.item_id " +
+            "where i.owner_id = ?1")
+    long countArchivedByOwnerId(Long ownerId);
+
+    @Query(nativeQuery = true, value = "select * from bookings_archive where id = ?1")
+    Optional<Booking> findArchivedById(Long id);
+
+    @Query(nativeQuery = true, value = "select * from bookings_archive where item_id = ?1 and status like ?2 " +
+            "order by start_date desc limit 1")
+    Optional<Booking> getLastArchivedBooking(Long itemId, String status);
+
+    /**
+     * Завершённая бронь в рабочей таблице или в архиве; подзапросы идут по индексу (booker_id, item_id, status, end_date).
+     */
+    @Query(nativeQuery = true, value = "select exists(select 1 from bookings where booker_id = :bookerId " +
+            "and item_id = :itemId and status = :status and end_date < :now) " +
+            "or exists(select 1 from bookings_archive where booker_id = :bookerId " +
+            "and item_id = :itemId and status = :status and end_date < :now)")
+    boolean hasCompletedBooking(@Param("bookerId") Long bookerId, @Param("itemId") Long itemId,
+                                @Param("status") String status, @Param("now") LocalDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "" + LockOptions.SKIP_LOCKED))
+    @Query("select b.id from Booking b where b.end < :before and b.status <> 'WAITING' order by b.end")
+    List<Long> lockArchivable(@Param("before") LocalDateTime before, Pageable page);
+
+    // countQuery задан явно: Spring Data не умеет выводить запрос подсчёта из INSERT
+    @Modifying
+    @Query(nativeQuery = true, countQuery = "select 0", value = "insert into bookings_archive " +
+            "(id, start_date, end_date, item_id, booker_id, status, version) " +
+            "select b.id, b.start_date, b.end_date, b.item_id, b.booker_id, b.status, b.version " +
+            "from bookings b where b.id in :ids")
+    int copyToArchive(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Booking b where b.id in :ids")
+    int deleteArchived(@Param("ids") Collection<Long> ids);
+
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end from Booking b " +
+            "where b.status in :statuses and b.end > :end")
+    List<BookingInterval> findIntervalsByStatusInAndEndAfter(@Param("statuses") Collection<String> statuses,
+                                                             @Param("end") LocalDateTime end);
+
+    @Query("select b.id as id, b.item.id as itemId, b.start as start, b.end as end from Booking b " +
+            "where b.item.id in :itemIds and b.status in :statuses and b.start < :to and b.end > :from " +
+            "order by b.item.id, b.start")
+    List<BookingInterval> findIntervalsInRange(@Param("itemIds") Collection<Long> itemIds,
+                                               @Param("statuses") Collection<String> statuses,
+                                               @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    String COUNT_BY_STATE = "select count(b) as countAll, " +
+            "coalesce(sum(case when b.start < :now and b.end > :now then 1 else 0 end), 0) as countCurrent, " +
+            "coalesce(sum(case when b.end < :now then 1 else 0 end), 0) as countPast, " +
+            "coalesce(sum(case when b.start > :now then 1 else 0 end), 0) as countFuture, " +
+            "coalesce(sum(case when b.status = 'WAITING' then 1 else 0 end), 0) as countWaiting, " +
+            "coalesce(sum(case when b.status = 'REJECTED' then 1 else 0 end), 0) as countRejected, " +
+            "coalesce(sum(case when b.status = 'EXPIRED' then 1 else 0 end), 0) as countExpired " +
+            "from Booking b ";
+
+    @Query(COUNT_BY_STATE + "where b.booker.id = :userId")
+    BookingStats countBookerByState(@Param("userId") Long bookerId, @Param("now") LocalDateTime now);
+
+    @Query(COUNT_BY_STATE + "where b.item.owner.id = :userId")
+    BookingStats countOwnerByState(@Param("userId") Long ownerId, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Booking b set b.status = :status, b.version = b.version + 1 " +
+            "where b.id = :id and b.status = :expected and b.version = :version")
+    int updateStatus(@Param("id") Long id, @Param("expected") String expected, @Param("status") String status,
+                     @Param("version") Long version);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Booking b set b.status = :status, b.version = b.version + 1 " +
+            "where b.id in :ids and b.status = :expected")
+    int updateStatusIn(@Param("ids") Collection<Long> ids, @Param("expected") String expected,
+                       @Param("status") String status);
+
+    @Query("select b from Booking b join fetch b.item i where b.id in :ids and i.owner.id = :ownerId")
+    List<Booking> findByIdInAndItemOwnerId(@Param("ids") Collection<Long> ids, @Param("ownerId") Long ownerId);
+
+    @Query("select b.id from Booking b where b.id in :ids and b.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "" + LockOptions.SKIP_LOCKED))
+    @Query("select b.id from Booking b where b.status = 'WAITING' and b.start < :now order by b.start")
+    List<Long> lockStaleWaiting(@Param("now") LocalDateTime now, Pageable page);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Booking b set b.status = 'EXPIRED', b.version = b.version + 1 " +
+            "where b.id in :ids and b.status = 'WAITING'")
+    int expireWaiting(@Param("ids") Collection<Long> ids);
+
+    String NEAREST_PER_ITEM = "select r.id from (select b.id, row_number() over (partition by b.item_id, " +
+            "case when b.start_date > :now then 1 else 0 end " +
+            "order by case when b.start_date > :now then b.start_date end, b.start_date desc) as rn ";
+
+    /**
+     * Id следующей и последней начавшейся брони каждой вещи одним запросом с оконной функцией.
+     */
+    @Query(nativeQuery = true, value = NEAREST_PER_ITEM + "from bookings b where b.item_id in :itemIds " +
+            "and b.status = :status and b.start_date <> :now) r where r.rn = 1")
+    List<Long> findNextAndLastIds(@Param("itemIds") Collection<Long> itemIds, @Param("now") LocalDateTime now,
+                                  @Param("status") String status);
+
+    @Query(nativeQuery = true, value = NEAREST_PER_ITEM + "from bookings_archive b where b.item_id in :itemIds " +
+            "and b.status = :status and b.start_date < :now) r where r.rn = 1")
+    List<Long> findLastArchivedIds(@Param("itemIds") Collection<Long> itemIds, @Param("now") LocalDateTime now,
+                                   @Param("status") String status);
+
+    @Query("select b from Booking b join fetch b.booker where b.id in :ids")
+    List<Booking> findWithBookerByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(nativeQuery = true, value = "select * from bookings_archive where id in :ids")
+    List<Booking> findArchivedByIdIn(@Param("ids") Collection<Long> ids);
 
     @Query(nativeQuery = true, value = "select * from bookings where item_id = ?1 and start_date > ?2 " +
             "and status like ?3 " +
@@ -25,8 +251,4 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             "and status like ?3 " +
             "order by start_date desc limit 1")
     Optional<Booking> getLastBooking(Long itemId, LocalDateTime now, String status);
-
-    @Query(nativeQuery = true, value = "select status from bookings where booker_id = ?1 and " +
-            "item_id = ?2 and end_date < ?3 limit 1 ")
-    String checkStatusBooking(Long bookerId, Long itemId, LocalDateTime localDateTime);
 }
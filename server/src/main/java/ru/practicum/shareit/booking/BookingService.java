@@ -1,18 +1,33 @@
 package ru.practicum.shareit.booking;
 
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingResultDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
 
 public interface BookingService {
 
     BookingDto createBooking(Long bookerId, BookingDto bookingDto);
 
+    List<BookingResultDto> createBookings(Long bookerId, List<BookingDto> bookingDtos);
+
     BookingDto approveBooking(Long userId, Long id, Boolean approved);
 
+    List<BookingDecisionDto> approveBookings(Long userId, List<Long> ids, Boolean approved);
+
     BookingDto getBookingById(Long userId, Long id);
 
-    List<BookingDto> findAllBookings(Long userId, String state, int from, int size);
+    List<BookingDto> findAllBookings(Long userId, String state, int from, int size, String cursor);
+
+    List<BookingDto> findAllBookingsOwner(Long userId, String state, int from, int size, String cursor);
+
+    void exportBookings(Long userId, OutputStream out) throws IOException;
+
+    Map<State, Long> countBookings(Long userId);
 
-    List<BookingDto> findAllBookingsOwner(Long userId, String state, int from, int size);
+    Map<State, Long> countBookingsOwner(Long userId);
 }
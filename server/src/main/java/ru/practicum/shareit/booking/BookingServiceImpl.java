@@ -1,48 +1,117 @@
 package ru.practicum.shareit.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingResultDto;
 import ru.practicum.shareit.exception.BadRequest;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.UnsupportedStatus;
 import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserDto;
+import ru.practicum.shareit.user.UserMapper;
 import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.utils.PageCursor;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BookingServiceImpl implements BookingService {
-
     private final BookingRepository bookingRepository;
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final NearestBookingsCache nearestBookingsCache;
+    private final ObjectMapper objectMapper;
 
     @Override
     public BookingDto createBooking(Long bookerId, BookingDto bookingDto) {
+        Item item = itemRepository.findById(bookingDto.getItemId()).orElse(null);
+        User booker = userRepository.findById(bookerId).orElse(null);
+        Booking booking = newBooking(bookerId, bookingDto, item, booker);
+        booking = bookingIntervalIndex.write(booking, bookingRepository::save);
+        nearestBookingsCache.invalidate(booking.getItem().getId());
+        log.info(String.valueOf(booking));
+        return BookingMapper.toDto(booking);
+    }
+
+    @Override
+    public List<BookingResultDto> createBookings(Long bookerId, List<BookingDto> bookingDtos) {
+        User booker = userRepository.findById(bookerId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+        Set<Long> itemIds = bookingDtos.stream()
+                .map(BookingDto::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = itemRepository.findAllWithOwnerByIdIn(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        BookingResultDto[] results = new BookingResultDto[bookingDtos.size()];
+        Map<Booking, Integer> positions = new IdentityHashMap<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < bookingDtos.size(); i++) {
+            BookingDto bookingDto = bookingDtos.get(i);
+            try {
+                Booking booking = newBooking(bookerId, bookingDto, items.get(bookingDto.getItemId()), booker);
+                positions.put(booking, i);
+                bookings.add(booking);
+            } catch (BadRequest e) {
+                results[i] = new BookingResultDto(i, HttpStatus.BAD_REQUEST.value(), null, e.getMessage());
+            } catch (NotFoundException e) {
+                results[i] = new BookingResultDto(i, HttpStatus.NOT_FOUND.value(), null, e.getMessage());
+            }
+        }
+        List<Booking> saved = bookingIntervalIndex.writeAll(bookings, bookingRepository::saveAll, booking -> {
+            int i = positions.get(booking);
+            results[i] = new BookingResultDto(i, HttpStatus.CONFLICT.value(), null, "Вещь уже забронирована на это время");
+        });
+        saved.forEach(booking -> {
+            nearestBookingsCache.invalidate(booking.getItem().getId());
+            int i = positions.get(booking);
+            results[i] = new BookingResultDto(i, HttpStatus.CREATED.value(), BookingMapper.toDto(booking), null);
+        });
+        log.info("Создано {} броней из {}", saved.size(), bookingDtos.size());
+        return Arrays.asList(results);
+    }
 
-        Optional<Item> item = itemRepository.findById(bookingDto.getItemId());
-        if (item.isEmpty()) {
+    private Booking newBooking(Long bookerId, BookingDto bookingDto, Item item, User booker) {
+        if (item == null) {
             log.warn("Вещь не найдена");
             throw new NotFoundException("Вещь не найдена");
         }
         checkDate(bookingDto);
-        if (item.get().getAvailable().equals(false)) {
+        if (item.getAvailable().equals(false)) {
             log.warn("Вещь не доступна к брони");
             throw new BadRequest("Вещь не доступна к брони");
         }
-        if (item.get().getOwner().getId().equals(bookerId)) {
+        if (item.getOwner().getId().equals(bookerId)) {
             log.warn("Пользователь не может бронировать вещь");
             throw new NotFoundException("Пользователь не может бронировать вещь");
         }
@@ -50,20 +119,17 @@ public class BookingServiceImpl implements BookingService {
             log.warn("Начало и конец совпадают");
             throw new BadRequest("Начало и конец совпадают");
         }
-        Optional<User> booker = userRepository.findById(bookerId);
-        if (booker.isEmpty()) {
+        if (booker == null) {
             log.warn("Пользователь не найден");
             throw new NotFoundException("Пользователь не найден");
         }
         Booking booking = new Booking();
         booking.setStart(bookingDto.getStart());
         booking.setEnd(bookingDto.getEnd());
-        booking.setItem(item.get());
-        booking.setBooker(booker.get());
+        booking.setItem(item);
+        booking.setBooker(booker);
         booking.setStatus(String.valueOf(Status.WAITING));
-        bookingRepository.save(booking);
-        log.info(String.valueOf(booking));
-        return BookingMapper.toDto(booking);
+        return booking;
     }
 
     @Override
@@ -84,18 +150,76 @@ public class BookingServiceImpl implements BookingService {
             log.warn("Бронь уже подтверждена");
             throw new BadRequest("Бронь уже подтверждена");
         }
+        if (!booking.getStatus().equals(String.valueOf(Status.WAITING))) {
+            log.warn("Бронь уже рассмотрена");
+            throw new BadRequest("Бронь уже рассмотрена");
+        }
+        String status = approved ? String.valueOf(Status.APPROVED) : String.valueOf(Status.REJECTED);
+        Booking decided = new Booking(booking.getId(), booking.getStart(), booking.getEnd(), booking.getItem(),
+                booking.getBooker(), status, booking.getVersion());
         if (approved) {
-            booking.setStatus(String.valueOf(Status.APPROVED));
+            // подтверждение перепроверяет пересечения под блокировкой вещи
+            decided = bookingIntervalIndex.write(decided, this::applyStatus);
         } else {
-            booking.setStatus(String.valueOf(Status.REJECTED));
+            // отказ только освобождает интервал: хватает условного обновления по версии
+            applyStatus(decided);
+            bookingIntervalIndex.release(List.of(decided.getId()));
         }
-        bookingRepository.save(booking);
-        return BookingMapper.toDto(booking);
+        nearestBookingsCache.invalidate(decided.getItem().getId());
+        return BookingMapper.toDto(decided);
+    }
+
+    @Override
+    public List<BookingDecisionDto> approveBookings(Long userId, List<Long> ids, Boolean approved) {
+        List<Long> bookingIds = ids.stream().distinct().collect(Collectors.toList());
+        Map<Long, Booking> owned = bookingRepository.findByIdInAndItemOwnerId(bookingIds, userId).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        List<Long> waiting = owned.values().stream()
+                .filter(booking -> booking.getStatus().equals(String.valueOf(Status.WAITING)))
+                .map(Booking::getId)
+                .collect(Collectors.toList());
+        String status = approved ? String.valueOf(Status.APPROVED) : String.valueOf(Status.REJECTED);
+        Set<Long> applied = new HashSet<>();
+        if (!waiting.isEmpty()) {
+            int updated = bookingRepository.updateStatusIn(waiting, String.valueOf(Status.WAITING), status);
+            applied.addAll(updated == waiting.size() ? waiting : bookingRepository.findIdsByIdInAndStatus(waiting, status));
+        }
+        if (!approved) {
+            bookingIntervalIndex.release(applied);
+        }
+        applied.forEach(id -> nearestBookingsCache.invalidate(owned.get(id).getItem().getId()));
+        log.info("Пользователь {} рассмотрел {} броней из {}", userId, applied.size(), bookingIds.size());
+        return bookingIds.stream()
+                .map(id -> {
+                    if (!owned.containsKey(id)) {
+                        return new BookingDecisionDto(id, HttpStatus.NOT_FOUND.value(), "Бронь не найдена");
+                    }
+                    if (applied.contains(id)) {
+                        return new BookingDecisionDto(id, HttpStatus.OK.value(), null);
+                    }
+                    if (waiting.contains(id)) {
+                        return new BookingDecisionDto(id, HttpStatus.CONFLICT.value(), "Бронь изменена параллельным запросом");
+                    }
+                    return new BookingDecisionDto(id, HttpStatus.BAD_REQUEST.value(), "Бронь уже рассмотрена");
+                })
+                .collect(Collectors.toList());
+    }
+
+    private Booking applyStatus(Booking booking) {
+        int updated = bookingRepository.updateStatus(booking.getId(), String.valueOf(Status.WAITING),
+                booking.getStatus(), booking.getVersion());
+        if (updated == 0) {
+            log.warn("Бронь изменена параллельным запросом");
+            throw new ConflictException("Бронь изменена параллельным запросом");
+        }
+        booking.setVersion(booking.getVersion() + 1);
+        return booking;
     }
 
     @Override
     public BookingDto getBookingById(Long userId, Long id) {
-        Optional<Booking> bookingOption = bookingRepository.findById(id);
+        Optional<Booking> bookingOption = bookingRepository.findById(id)
+                .or(() -> bookingRepository.findArchivedById(id));
         if (bookingOption.isPresent()) {
             User owner = bookingOption.get().getItem().getOwner();
             User booker = bookingOption.get().getBooker();
@@ -111,86 +235,184 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override
-    public List<BookingDto> findAllBookings(Long userId, String state, int from, int size) {
-        Optional<User> userOptional = userRepository.findById(userId);
-        if (userOptional.isPresent()) {
-            List<Booking> listBookings;
-            User booker = userOptional.get();
-            PageRequest page = PageRequest.of(from > 0 ? from / size : 0, size);
-            listBookings = bookingRepository.findByBookerOrderByStartDesc(booker, page);
-            State bookingState = checkBookingState(state);
-            return sortedByState(listBookings, bookingState);
-        } else {
+    public List<BookingDto> findAllBookings(Long userId, String state, int from, int size, String cursor) {
+        if (!userRepository.existsById(userId)) {
             log.warn("Пользователь не найден");
             throw new NotFoundException("Пользователь не найден");
         }
+        State bookingState = checkBookingState(state);
+        LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = cursor == null
+                ? findBookerBookings(userId, bookingState, now, PageRequest.of(from > 0 ? from / size : 0, size))
+                : findBookerBookingsAfter(userId, bookingState, now, PageCursor.decode(cursor), PageRequest.of(0, size));
+        return bookings.stream()
+                .map(BookingMapper::toDto)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public List<BookingDto> findAllBookingsOwner(Long userId, String state, int from, int size) {
-        Optional<User> userOptional = userRepository.findById(userId);
-        if (userOptional.isPresent()) {
-            List<Item> itemsOwner = itemRepository.findByOwner(userOptional);
-            List<Booking> bookingList = new ArrayList<>();
-            PageRequest page = PageRequest.of(from > 0 ? from / size : 0, size);
-            itemsOwner.stream().forEach(item -> {
-                        List<Booking> bookingsList = bookingRepository.findByItemIdOrderByStartDesc(item.getId(), page);
-                        bookingList.addAll(bookingsList);
-                    }
-            );
-            State bookingState = checkBookingState(state);
-            return sortedByState(bookingList, bookingState);
-        } else {
+    public List<BookingDto> findAllBookingsOwner(Long userId, String state, int from, int size, String cursor) {
+        if (!userRepository.existsById(userId)) {
+            log.warn("Пользователь не найден");
+            throw new NotFoundException("Пользователь не найден");
+        }
+        State bookingState = checkBookingState(state);
+        LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = cursor == null
+                ? findOwnerBookings(userId, bookingState, now, PageRequest.of(from > 0 ? from / size : 0, size))
+                : findOwnerBookingsAfter(userId, bookingState, now, PageCursor.decode(cursor), PageRequest.of(0, size));
+        return bookings.stream()
+                .map(BookingMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Пишет историю броней в NDJSON по мере чтения курсора, не загружая сущности.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBookings(Long userId, OutputStream out) throws IOException {
+        UserDto booker = userRepository.findById(userId).map(UserMapper::toDto).orElseThrow(() -> {
+            log.warn("Пользователь не найден");
+            return new NotFoundException("Пользователь не найден");
+        });
+        int count = 0;
+        try (Stream<BookingExportRow> rows = bookingRepository.streamExportByBookerId(userId)) {
+            Iterator<BookingExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(BookingMapper.toDto(iterator.next(), booker)));
+                out.write('\n');
+                count++;
+            }
+        }
+        out.flush();
+        log.info("Выгружено {} броней пользователя {}", count, userId);
+    }
+
+    @Override
+    public Map<State, Long> countBookings(Long userId) {
+        if (!userRepository.existsById(userId)) {
             log.warn("Пользователь не найден");
             throw new NotFoundException("Пользователь не найден");
         }
+        return toStateCounts(bookingRepository.countBookerByState(userId, LocalDateTime.now()),
+                bookingRepository.countArchivedByBookerId(userId));
+    }
+
+    @Override
+    public Map<State, Long> countBookingsOwner(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            log.warn("Пользователь не найден");
+            throw new NotFoundException("Пользователь не найден");
+        }
+        return toStateCounts(bookingRepository.countOwnerByState(userId, LocalDateTime.now()),
+                bookingRepository.countArchivedByOwnerId(userId));
+    }
+
+    /**
+     * Архивные брони завершены давно, поэтому входят только в ALL и PAST, как и в списках.
+     */
+    private Map<State, Long> toStateCounts(BookingStats stats, long archived) {
+        Map<State, Long> counts = new EnumMap<>(State.class);
+        counts.put(State.ALL, stats.getCountAll() + archived);
+        counts.put(State.CURRENT, stats.getCountCurrent());
+        counts.put(State.PAST, stats.getCountPast() + archived);
+        counts.put(State.FUTURE, stats.getCountFuture());
+        counts.put(State.WAITING, stats.getCountWaiting());
+        counts.put(State.REJECTED, stats.getCountRejected());
+        counts.put(State.EXPIRED, stats.getCountExpired());
+        return counts;
     }
 
     private void checkDate(BookingDto bookingDto) {
-        if (bookingDto.getEnd().isBefore(bookingDto.getStart())
+        if (bookingDto.getStart() == null || bookingDto.getEnd() == null
+                || bookingDto.getEnd().isBefore(bookingDto.getStart())
         ) {
             log.warn("Конец не после начала");
             throw new BadRequest("Ошибка даты");
         }
     }
 
-    private List<BookingDto> sortedByState(List<Booking> bookingList, State state) {
-        if (state.equals(State.CURRENT)) {
-            return bookingList.stream()
-                    .filter(booking -> booking.getStart().isBefore(LocalDateTime.now()))
-                    .filter(booking -> booking.getEnd().isAfter(LocalDateTime.now()))
-                    .map(BookingMapper::toDto)
-                    .collect(Collectors.toList());
-        }
-        if (state.equals(State.PAST)) {
-            return bookingList.stream()
-                    .filter(booking -> booking.getStart().isBefore(LocalDateTime.now()))
-                    .filter(booking -> booking.getEnd().isBefore(LocalDateTime.now()))
-                    .map(BookingMapper::toDto)
-                    .collect(Collectors.toList());
-        }
-        if (state.equals(State.FUTURE)) {
-            return bookingList.stream()
-                    .filter(booking -> booking.getStart().isAfter(LocalDateTime.now())
-                            && booking.getEnd().isAfter(LocalDateTime.now()))
-                    .map(BookingMapper::toDto)
-                    .collect(Collectors.toList());
-        }
-        if (state.equals(State.WAITING)) {
-            return bookingList.stream()
-                    .filter(booking -> booking.getStatus().equals(String.valueOf(Status.WAITING)))
-                    .map(BookingMapper::toDto)
-                    .collect(Collectors.toList());
-        }
-        if (state.equals(State.REJECTED)) {
-            return bookingList.stream()
-                    .filter(booking -> booking.getStatus().equals(String.valueOf(Status.REJECTED)))
-                    .map(BookingMapper::toDto)
-                    .collect(Collectors.toList());
-        }
-        return bookingList.stream()
-                .map(BookingMapper::toDto)
-                .collect(Collectors.toList());
+    private List<Booking> findBookerBookings(Long bookerId, State state, LocalDateTime now, Pageable page) {
+        switch (state) {
+            case CURRENT:
+                return bookingRepository.findByBookerIdAndStartBeforeAndEndAfterOrderByStartDescIdDesc(bookerId, now, now, page);
+            case PAST:
+                return bookingRepository.findBookerPastHistory(bookerId, now, page);
+            case FUTURE:
+                return bookingRepository.findByBookerIdAndStartAfterOrderByStartDescIdDesc(bookerId, now, page);
+            case WAITING:
+                return bookingRepository.findByBookerIdAndStatusOrderByStartDescIdDesc(bookerId, String.valueOf(Status.WAITING), page);
+            case REJECTED:
+                return bookingRepository.findByBookerIdAndStatusOrderByStartDescIdDesc(bookerId, String.valueOf(Status.REJECTED), page);
+            case EXPIRED:
+                return bookingRepository.findByBookerIdAndStatusOrderByStartDescIdDesc(bookerId, String.valueOf(Status.EXPIRED), page);
+            default:
+                return bookingRepository.findBookerHistory(bookerId, page);
+        }
+    }
+
+    private List<Booking> findOwnerBookings(Long ownerId, State state, LocalDateTime now, Pageable page) {
+        switch (state) {
+            case CURRENT:
+                return bookingRepository.findByItemOwnerIdAndStartBeforeAndEndAfterOrderByStartDescIdDesc(ownerId, now, now, page);
+            case PAST:
+                return bookingRepository.findOwnerPastHistory(ownerId, now, page);
+            case FUTURE:
+                return bookingRepository.findByItemOwnerIdAndStartAfterOrderByStartDescIdDesc(ownerId, now, page);
+            case WAITING:
+                return bookingRepository.findByItemOwnerIdAndStatusOrderByStartDescIdDesc(ownerId, String.valueOf(Status.WAITING), page);
+            case REJECTED:
+                return bookingRepository.findByItemOwnerIdAndStatusOrderByStartDescIdDesc(ownerId, String.valueOf(Status.REJECTED), page);
+            case EXPIRED:
+                return bookingRepository.findByItemOwnerIdAndStatusOrderByStartDescIdDesc(ownerId, String.valueOf(Status.EXPIRED), page);
+            default:
+                return bookingRepository.findOwnerHistory(ownerId, page);
+        }
+    }
+
+    private List<Booking> findBookerBookingsAfter(Long bookerId, State state, LocalDateTime now,
+                                                  PageCursor cursor, Pageable page) {
+        LocalDateTime start = cursor.getPoint();
+        Long id = cursor.getId();
+        switch (state) {
+            case CURRENT:
+                return bookingRepository.findBookerCurrentAfter(bookerId, now, start, id, page);
+            case PAST:
+                return bookingRepository.findBookerPastHistoryAfter(bookerId, now, start, id, page);
+            case FUTURE:
+                return bookingRepository.findBookerFutureAfter(bookerId, now, start, id, page);
+            case WAITING:
+                return bookingRepository.findBookerByStatusAfter(bookerId, String.valueOf(Status.WAITING), start, id, page);
+            case REJECTED:
+                return bookingRepository.findBookerByStatusAfter(bookerId, String.valueOf(Status.REJECTED), start, id, page);
+            case EXPIRED:
+                return bookingRepository.findBookerByStatusAfter(bookerId, String.valueOf(Status.EXPIRED), start, id, page);
+            default:
+                return bookingRepository.findBookerHistoryAfter(bookerId, start, id, page);
+        }
+    }
+
+    private List<Booking> findOwnerBookingsAfter(Long ownerId, State state, LocalDateTime now,
+                                                 PageCursor cursor, Pageable page) {
+        LocalDateTime start = cursor.getPoint();
+        Long id = cursor.getId();
+        switch (state) {
+            case CURRENT:
+                return bookingRepository.findOwnerCurrentAfter(ownerId, now, start, id, page);
+            case PAST:
+                return bookingRepository.findOwnerPastHistoryAfter(ownerId, now, start, id, page);
+            case FUTURE:
+                return bookingRepository.findOwnerFutureAfter(ownerId, now, start, id, page);
+            case WAITING:
+                return bookingRepository.findOwnerByStatusAfter(ownerId, String.valueOf(Status.WAITING), start, id, page);
+            case REJECTED:
+                return bookingRepository.findOwnerByStatusAfter(ownerId, String.valueOf(Status.REJECTED), start, id, page);
+            case EXPIRED:
+                return bookingRepository.findOwnerByStatusAfter(ownerId, String.valueOf(Status.EXPIRED), start, id, page);
+            default:
+                return bookingRepository.findOwnerHistoryAfter(ownerId, start, id, page);
+        }
     }
 
     private State checkBookingState(String state) {
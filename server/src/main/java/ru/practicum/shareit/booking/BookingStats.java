@@ -0,0 +1,18 @@
+package ru.practicum.shareit.booking;
+
+public interface BookingStats {
+
+    Long getCountAll();
+
+    Long getCountCurrent();
+
+    Long getCountPast();
+
+    Long getCountFuture();
+
+    Long getCountWaiting();
+
+    Long getCountRejected();
+
+    Long getCountExpired();
+}
@@ -0,0 +1,67 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.utils.Constants;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Пары (пользователь, вещь) с завершённой подтверждённой бронью. Такой ответ не меняется,
+ * поэтому кэшируются только положительные ответы и записи не сбрасываются.
+ */
+@Component
+public class CompletedBookingsCache {
+    private final BookingRepository bookingRepository;
+    private final Map<Key, Boolean> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CompletedBookingsCache(BookingRepository bookingRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${shareit.completed-bookings-cache.max-entries:100000}") int maxEntries) {
+        this.bookingRepository = bookingRepository;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter("shareit.completed-bookings.cache", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.completed-bookings.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("shareit.completed-bookings.cache.size", Tags.empty(), entries);
+    }
+
+    public boolean hasCompletedBooking(Long bookerId, Long itemId) {
+        Key key = new Key(bookerId, itemId);
+        synchronized (entries) {
+            if (entries.get(key) != null) {
+                hits.increment();
+                return true;
+            }
+        }
+        misses.increment();
+        boolean completed = bookingRepository.hasCompletedBooking(bookerId, itemId, Constants.STATUS_APPROVED,
+                LocalDateTime.now());
+        if (completed) {
+            synchronized (entries) {
+                entries.put(key, Boolean.TRUE);
+            }
+        }
+        return completed;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final Long bookerId;
+        private final Long itemId;
+    }
+}
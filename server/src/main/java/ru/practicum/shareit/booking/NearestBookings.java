@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Последняя начавшаяся и ближайшая следующая подтверждённая бронь; пара устаревает с началом следующей.
+ */
+@Getter
+@AllArgsConstructor
+public class NearestBookings {
+    private final BookingDto last;
+    private final BookingDto next;
+
+    public boolean isValidAt(LocalDateTime now) {
+        return next == null || now.isBefore(next.getStart());
+    }
+}
@@ -0,0 +1,140 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.utils.Constants;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * LRU-кэш ближайших броней вещей. Изменение пользователя сбрасывает только записи, где он бронирующий.
+ * Изменения броней на других экземплярах сервера сюда не приходят, поэтому запись живёт не дольше ttl.
+ */
+@Component
+@Slf4j
+public class NearestBookingsCache {
+    private final BookingRepository bookingRepository;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries;
+    private final Map<Long, Set<Long>> itemsByBooker = new HashMap<>();
+    // загрузки в процессе: сброс вещи убирает её метку, и прочитанная до сброса пара не сохраняется
+    private final Map<Long, Object> loading = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public NearestBookingsCache(BookingRepository bookingRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${shareit.nearest-bookings-cache.ttl:30s}") Duration ttl,
+                                @Value("${shareit.nearest-bookings-cache.max-entries:10000}") int maxEntries) {
+        this.bookingRepository = bookingRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                unlinkBookers(eldest.getKey(), eldest.getValue().nearest);
+                return true;
+            }
+        };
+        this.hits = meterRegistry.counter("shareit.nearest-bookings.cache", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.nearest-bookings.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("shareit.nearest-bookings.cache.size", Tags.empty(), entries);
+    }
+
+    public NearestBookings get(Long itemId) {
+        LocalDateTime now = LocalDateTime.now();
+        long loadedAt = System.nanoTime();
+        Object token = new Object();
+        synchronized (entries) {
+            Entry cached = entries.get(itemId);
+            if (cached != null && cached.nearest.isValidAt(now) && loadedAt - cached.loadedAt < ttlNanos) {
+                hits.increment();
+                return cached.nearest;
+            }
+            loading.put(itemId, token);
+        }
+        misses.increment();
+        NearestBookings loaded = load(itemId, now);
+        synchronized (entries) {
+            if (loading.remove(itemId, token)) {
+                remove(itemId);
+                entries.put(itemId, new Entry(loaded, loadedAt));
+                bookerIds(loaded).forEach(bookerId ->
+                        itemsByBooker.computeIfAbsent(bookerId, id -> new HashSet<>()).add(itemId));
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Long itemId) {
+        synchronized (entries) {
+            loading.remove(itemId);
+            remove(itemId);
+        }
+    }
+
+    public void invalidateBooker(Long bookerId) {
+        synchronized (entries) {
+            // загрузка могла прочитать прежнее имя пользователя, а для какой вещи - заранее не известно
+            loading.clear();
+            Set<Long> itemIds = itemsByBooker.remove(bookerId);
+            if (itemIds != null) {
+                itemIds.forEach(this::remove);
+            }
+        }
+    }
+
+    private void remove(Long itemId) {
+        Entry removed = entries.remove(itemId);
+        if (removed != null) {
+            unlinkBookers(itemId, removed.nearest);
+        }
+    }
+
+    private void unlinkBookers(Long itemId, NearestBookings nearest) {
+        bookerIds(nearest).forEach(bookerId -> {
+            Set<Long> itemIds = itemsByBooker.get(bookerId);
+            if (itemIds != null && itemIds.remove(itemId) && itemIds.isEmpty()) {
+                itemsByBooker.remove(bookerId);
+            }
+        });
+    }
+
+    private static Stream<Long> bookerIds(NearestBookings nearest) {
+        return Stream.of(nearest.getLast(), nearest.getNext())
+                .filter(Objects::nonNull)
+                .map(BookingDto::getBookerId);
+    }
+
+    private NearestBookings load(Long itemId, LocalDateTime now) {
+        Booking next = bookingRepository.getNextBooking(itemId, now, Constants.STATUS_APPROVED).orElse(null);
+        Booking last = bookingRepository.getLastBooking(itemId, now, Constants.STATUS_APPROVED)
+                .or(() -> bookingRepository.getLastArchivedBooking(itemId, Constants.STATUS_APPROVED))
+                .orElse(null);
+        return new NearestBookings(last == null ? null : BookingMapper.toDto(last),
+                next == null ? null : BookingMapper.toDto(next));
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final NearestBookings nearest;
+        private final long loadedAt;
+    }
+}
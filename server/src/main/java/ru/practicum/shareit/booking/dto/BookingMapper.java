@@ -2,7 +2,10 @@ package ru.practicum.shareit.booking.dto;
 
 import lombok.experimental.UtilityClass;
 import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingExportRow;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.user.UserDto;
 import ru.practicum.shareit.user.UserMapper;
 
 @UtilityClass
@@ -20,4 +23,15 @@ public class BookingMapper {
         bookingDto.setStatus(booking.getStatus());
         return bookingDto;
     }
+
+    public static BookingDto toDto(BookingExportRow row, UserDto booker) {
+        ItemDto itemDto = new ItemDto();
+        itemDto.setId(row.getItemId());
+        itemDto.setName(row.getItemName());
+        itemDto.setDescription(row.getItemDescription());
+        itemDto.setAvailable(row.getItemAvailable());
+        itemDto.setRequestId(row.getItemRequestId());
+        return new BookingDto(row.getId(), row.getStart(), row.getEnd(), row.getItemId(), itemDto, booker,
+                booker.getId(), row.getStatus());
+    }
 }
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -13,4 +14,10 @@ public class ErrorHandler {
     public ErrorResponse handleBadRequest(final UnsupportedStatus e) {
         return new ErrorResponse(e.getMessage());
     }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleConflict(final OptimisticLockingFailureException e) {
+        return new ErrorResponse("Объект изменён параллельным запросом");
+    }
 }
@@ -1,13 +1,35 @@
 package ru.practicum.shareit.item;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
-    @Query(nativeQuery = true, value = "select * from comments where item_id = ?1 order by created desc")
-    List<Comment> getCommentsForItem(Long itemId);
+    @Query("select c from Comment c join fetch c.author where c.item.id = :itemId " +
+            "order by c.created desc, c.id desc")
+    List<Comment> findLatestByItemId(@Param("itemId") Long itemId, Pageable page);
+
+    @Query("select c from Comment c join fetch c.author where c.item.id = :itemId " +
+            "and (c.created < :created or (c.created = :created and c.id < :id)) " +
+            "order by c.created desc, c.id desc")
+    List<Comment> findByItemIdBefore(@Param("itemId") Long itemId, @Param("created") LocalDateTime created,
+                                     @Param("id") Long id, Pageable page);
+
+    /**
+     * Id последних limit отзывов каждой вещи одним запросом по индексу (item_id, created, id).
+     */
+    @Query(nativeQuery = true, value = "select r.id from (select c.id, row_number() over (partition by c.item_id " +
+            "order by c.created desc, c.id desc) as rn from comments c where c.item_id in :itemIds) r " +
+            "where r.rn <= :limit")
+    List<Long> findLatestIdsByItemIdIn(@Param("itemIds") Collection<Long> itemIds, @Param("limit") int limit);
+
+    @Query("select c from Comment c join fetch c.author where c.id in :ids order by c.created desc, c.id desc")
+    List<Comment> findWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
 }
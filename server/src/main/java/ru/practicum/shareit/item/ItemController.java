@@ -2,13 +2,29 @@ package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
+import ru.practicum.shareit.item.dto.ItemsResultDto;
+import ru.practicum.shareit.utils.IdempotencyStore;
+import ru.practicum.shareit.utils.PageCursor;
 import ru.practicum.shareit.utils.Variables;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -16,18 +32,50 @@ import java.util.Collection;
 @RequestMapping("/items")
 public class ItemController {
     private final ItemService itemService;
+    private final IdempotencyStore idempotencyStore;
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
-    public Collection<ItemDto> findAllItemsUser(@RequestHeader(value = Variables.USER_ID) Long userId) {
-        return itemService.findAllItems(userId);
+    public Collection<ItemDto> findAllItemsUser(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                                @RequestParam(value = "from", defaultValue = "0") int from,
+                                                @RequestParam(value = "size", defaultValue = "10") int size,
+                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                HttpServletResponse response) {
+        List<ItemDto> items = itemService.findAllItems(userId, from, size, cursor);
+        String next = PageCursor.next(items, size, item -> new PageCursor(null, item.getId()));
+        if (next != null) {
+            response.setHeader(Variables.NEXT_CURSOR, next);
+        }
+        return items;
+    }
+
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public ItemsResultDto getItems(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                   @RequestParam("ids") List<Long> ids) {
+        return itemService.getItems(userId, ids);
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.OK)
     public ItemDto createItem(@RequestHeader(value = Variables.USER_ID) Long userId,
+                              @RequestHeader(value = Variables.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
                               @RequestBody ItemDto itemDto) {
-        return itemService.createItem(userId, itemDto);
+        return idempotencyStore.execute("items", userId, idempotencyKey, itemDto,
+                () -> itemService.createItem(userId, itemDto));
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, ItemImporter.TEXT_CSV})
+    @ResponseStatus(HttpStatus.OK)
+    public ItemImportResultDto importItems(@RequestHeader(value = Variables.USER_ID) Long userId,
+                                           HttpServletRequest request) throws IOException {
+        ItemImporter.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.APPLICATION_NDJSON) ? ItemImporter.Format.NDJSON : ItemImporter.Format.CSV;
+        Charset charset = request.getCharacterEncoding() == null ? StandardCharsets.UTF_8
+                : Charset.forName(request.getCharacterEncoding());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset))) {
+            return itemService.importItems(userId, reader, format);
+        }
     }
 
     @PatchMapping("/{itemId}")
@@ -47,8 +95,33 @@ public class ItemController {
 
     @GetMapping("/search")
     @ResponseStatus(HttpStatus.OK)
-    public Collection<ItemDto> search(@RequestParam("text") String text) {
-        return itemService.search(text);
+    public List<ItemDto> search(@RequestParam("text") String text,
+                                @RequestParam(value = "from", defaultValue = "0") int from,
+                                @RequestParam(value = "size", defaultValue = "10") int size) {
+        return itemService.search(text, from, size);
+    }
+
+    @GetMapping("/suggest")
+    @ResponseStatus(HttpStatus.OK)
+    public List<String> suggest(@RequestParam("prefix") String prefix,
+                                @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return itemService.suggest(prefix, limit);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    @ResponseStatus(HttpStatus.OK)
+    public ItemAvailabilityDto getAvailability(@PathVariable Long itemId,
+                                               @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                               @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return itemService.getAvailability(List.of(itemId), from, to).get(0);
+    }
+
+    @GetMapping("/availability")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ItemAvailabilityDto> getAvailability(@RequestParam("ids") List<Long> itemIds,
+                                                     @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                     @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return itemService.getAvailability(itemIds, from, to);
     }
 
     @PostMapping("/{itemId}/comment")
@@ -58,4 +131,18 @@ public class ItemController {
                                     @RequestBody CommentDto commentDto) {
         return itemService.createComment(authorId, itemId, commentDto);
     }
+
+    @GetMapping("/{itemId}/comments")
+    @ResponseStatus(HttpStatus.OK)
+    public List<CommentDto> getComments(@PathVariable Long itemId,
+                                        @RequestParam(value = "size", defaultValue = "10") int size,
+                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                        HttpServletResponse response) {
+        List<CommentDto> comments = itemService.getComments(itemId, cursor, size);
+        String next = PageCursor.next(comments, size, comment -> new PageCursor(comment.getCreated(), comment.getId()));
+        if (next != null) {
+            response.setHeader(Variables.NEXT_CURSOR, next);
+        }
+        return comments;
+    }
 }
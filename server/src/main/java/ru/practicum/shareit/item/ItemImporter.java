@@ -0,0 +1,231 @@
+package ru.practicum.shareit.item;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.BadRequest;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportErrorDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.ItemRequestFeed;
+import ru.practicum.shareit.user.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый импорт вещей из NDJSON или CSV пачками JDBC batch; в памяти держится только текущая пачка.
+ */
+@Component
+@Slf4j
+public class ItemImporter {
+    public static final String TEXT_CSV = "text/csv";
+    private static final String INSERT = "insert into items (name, description, available, owner_id, request_id) " +
+            "values (?, ?, ?, ?, ?)";
+    private static final int MAX_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ItemRequestFeed itemRequestFeed;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    public ItemImporter(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        ObjectMapper objectMapper,
+                        ItemSearchIndex itemSearchIndex,
+                        ItemRequestFeed itemRequestFeed,
+                        @Value("${shareit.item-import.batch-size:500}") int batchSize,
+                        @Value("${shareit.item-import.max-errors:100}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.itemSearchIndex = itemSearchIndex;
+        this.itemRequestFeed = itemRequestFeed;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ItemImportResultDto importItems(User owner, BufferedReader reader, Format format) throws IOException {
+        ItemImportResultDto result = new ItemImportResultDto(0, 0, new ArrayList<>());
+        List<Item> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && isCsvHeader(line))) {
+                continue;
+            }
+            try {
+                ItemDto itemDto = format == Format.CSV ? parseCsv(line) : parseJson(line);
+                validate(itemDto);
+                Item item = ItemMapper.toItem(owner, itemDto);
+                item.setId(null);
+                batch.add(item);
+                batchLines.add(lineNumber);
+            } catch (BadRequest e) {
+                reject(result, lineNumber, e.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                flush(batch, batchLines, result);
+            }
+        }
+        flush(batch, batchLines, result);
+        return result;
+    }
+
+    private void flush(List<Item> batch, List<Long> batchLines, ItemImportResultDto result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            itemSearchIndex.putAll(batch);
+            itemRequestFeed.putItems(batch);
+            result.setImported(result.getImported() + batch.size());
+        } catch (DataAccessException e) {
+            log.warn("Не удалось записать пачку из {} вещей: {}", batch.size(), e.getMessage());
+            batchLines.forEach(lineNumber -> reject(result, lineNumber, "Ошибка записи пачки"));
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private void insert(List<Item> batch) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, new String[]{"id"})) {
+                for (Item item : batch) {
+                    statement.setString(1, item.getName());
+                    statement.setString(2, item.getDescription());
+                    statement.setBoolean(3, item.getAvailable());
+                    statement.setLong(4, item.getOwner().getId());
+                    if (item.getRequestId() == null) {
+                        statement.setNull(5, Types.BIGINT);
+                    } else {
+                        statement.setLong(5, item.getRequestId());
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        batch.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void reject(ItemImportResultDto result, long lineNumber, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new ItemImportErrorDto(lineNumber, message));
+        }
+    }
+
+    private ItemDto parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, ItemDto.class);
+        } catch (JsonProcessingException e) {
+            throw new BadRequest("Неверный JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Строка CSV: name,description,available[,requestId]; кавычки внутри поля в кавычках удваиваются.
+     */
+    private ItemDto parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new BadRequest("Ожидается 3 или 4 поля, получено " + fields.size());
+        }
+        ItemDto itemDto = new ItemDto();
+        itemDto.setName(fields.get(0));
+        itemDto.setDescription(fields.get(1));
+        String available = fields.get(2).trim();
+        if (available.equalsIgnoreCase("true") || available.equalsIgnoreCase("false")) {
+            itemDto.setAvailable(Boolean.parseBoolean(available));
+        }
+        if (fields.size() == 4 && !fields.get(3).isBlank()) {
+            try {
+                itemDto.setRequestId(Long.parseLong(fields.get(3).trim()));
+            } catch (NumberFormatException e) {
+                throw new BadRequest("Неверный id запроса: " + fields.get(3));
+            }
+        }
+        return itemDto;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new BadRequest("Незакрытая кавычка");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase().startsWith("name,");
+    }
+
+    private static void validate(ItemDto itemDto) {
+        if (itemDto.getName() == null || itemDto.getName().isBlank()) {
+            throw new BadRequest("Не заполнено название");
+        }
+        if (itemDto.getDescription() == null || itemDto.getDescription().isBlank()) {
+            throw new BadRequest("Не заполнено описание");
+        }
+        if (itemDto.getAvailable() == null) {
+            throw new BadRequest("Не указана доступность");
+        }
+        if (itemDto.getName().length() > MAX_LENGTH || itemDto.getDescription().length() > MAX_LENGTH) {
+            throw new BadRequest("Название и описание не длиннее " + MAX_LENGTH + " символов");
+        }
+    }
+}
@@ -1,24 +1,41 @@
 package ru.practicum.shareit.item;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.User;
 
+import javax.persistence.LockModeType;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
 
-    List<Item> findByOwner(Optional<User> owner);
+    List<Item> findByOwnerIdOrderById(Long ownerId, Pageable page);
 
-    List<Item> findByOwnerOrderById(Optional<User> owner);
+    List<Item> findByOwnerIdAndIdGreaterThanOrderById(Long ownerId, Long id, Pageable page);
 
-    @Query(nativeQuery = true, value = "select * from items i where i.available = true and " +
-            "(upper(i.name) like upper(concat('%', ?1, '%')) " +
-            "or upper(i.description) like upper(concat('%', ?1, '%')))")
-    Collection<Item> search(String text);
+    /**
+     * Счётчик отзывов хранится в строке вещи, чтобы просмотр вещи не считал count(*).
+     */
+    @Modifying
+    @Query("update Item i set i.commentCount = i.commentCount + 1 where i.id = :id")
+    int incrementCommentCount(@Param("id") Long id);
 
-    List<Item> findByRequestId(Long requestId);
+    @Query("select count(i) as count, coalesce(max(i.id), 0) as maxId, coalesce(sum(i.version), 0) as versionSum " +
+            "from Item i")
+    ItemWatermark getWatermark();
+
+    @Query("select i from Item i join fetch i.owner where i.requestId in :requestIds order by i.id")
+    List<Item> findAllWithOwnerByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
+    @Query("select i from Item i join fetch i.owner where i.id in :ids")
+    List<Item> findAllWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i.id from Item i where i.id in :ids order by i.id")
+    List<Long> lockByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,6 @@
+package ru.practicum.shareit.item;
+
+public interface ItemRepositoryCustom {
+
+    int updatePartially(Long id, Long ownerId, String name, String description, Boolean available, Long requestId);
+}
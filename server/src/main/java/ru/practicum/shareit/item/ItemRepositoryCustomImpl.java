@@ -0,0 +1,50 @@
+package ru.practicum.shareit.item;
+
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+
+public class ItemRepositoryCustomImpl implements ItemRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * UPDATE собирается только из переданных полей, владелец проверяется условием запроса.
+     */
+    @Override
+    @Transactional
+    public int updatePartially(Long id, Long ownerId, String name, String description, Boolean available,
+                               Long requestId) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Item> update = builder.createCriteriaUpdate(Item.class);
+        Root<Item> item = update.from(Item.class);
+        if (name != null) {
+            update.set(item.<String>get("name"), name);
+        }
+        if (description != null) {
+            update.set(item.<String>get("description"), description);
+        }
+        if (available != null) {
+            update.set(item.<Boolean>get("available"), available);
+        }
+        if (requestId != null) {
+            update.set(item.<Long>get("requestId"), requestId);
+        }
+        update.set(item.<Long>get("version"), builder.sum(item.<Long>get("version"), 1L));
+        ParameterExpression<Long> idParameter = builder.parameter(Long.class);
+        ParameterExpression<Long> ownerParameter = builder.parameter(Long.class);
+        update.where(builder.equal(item.get("id"), idParameter), builder.equal(item.get("owner").get("id"), ownerParameter));
+        int updated = entityManager.createQuery(update)
+                .setParameter(idParameter, id)
+                .setParameter(ownerParameter, ownerId)
+                .executeUpdate();
+        entityManager.clear();
+        return updated;
+    }
+}
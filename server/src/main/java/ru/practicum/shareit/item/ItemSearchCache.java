@@ -0,0 +1,109 @@
+package ru.practicum.shareit.item;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * LRU-кэш страниц поиска с ttl; запись перестаёт действовать при любом изменении индекса,
+ * в том числе при его перестроении после изменений на другом экземпляре сервера.
+ */
+@Component
+@Slf4j
+public class ItemSearchCache {
+    private final ItemSearchIndex itemSearchIndex;
+    private final long ttlNanos;
+    private final int maxResultSize;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidatedEvictions;
+
+    public ItemSearchCache(ItemSearchIndex itemSearchIndex,
+                           MeterRegistry meterRegistry,
+                           @Value("${shareit.search-cache.ttl:30s}") Duration ttl,
+                           @Value("${shareit.search-cache.max-entries:1000}") int maxEntries,
+                           @Value("${shareit.search-cache.max-result-size:100}") int maxResultSize) {
+        this.itemSearchIndex = itemSearchIndex;
+        this.ttlNanos = ttl.toNanos();
+        this.maxResultSize = maxResultSize;
+        this.hits = meterRegistry.counter("shareit.item-search.cache", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.item-search.cache", "result", "miss");
+        this.sizeEvictions = meterRegistry.counter("shareit.item-search.cache.evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter("shareit.item-search.cache.evictions", "cause", "expired");
+        this.invalidatedEvictions = meterRegistry.counter("shareit.item-search.cache.evictions", "cause", "invalidated");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        meterRegistry.gaugeMapSize("shareit.item-search.cache.size", Tags.empty(), entries);
+        meterRegistry.gauge("shareit.item-search.cache.hit-ratio", this, cache -> {
+            double total = cache.hits.count() + cache.misses.count();
+            return total == 0 ? 0 : cache.hits.count() / total;
+        });
+    }
+
+    public List<ItemDto> search(String text, int from, int size) {
+        if (size > maxResultSize) {
+            return itemSearchIndex.search(text, from, size);
+        }
+        Key key = new Key(text.toLowerCase(Locale.ROOT), from, size);
+        long generation = itemSearchIndex.getGeneration();
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                if (cached.generation != generation) {
+                    invalidatedEvictions.increment();
+                } else if (now - cached.createdAt >= ttlNanos) {
+                    expiredEvictions.increment();
+                } else {
+                    hits.increment();
+                    return cached.items;
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        List<ItemDto> items = List.copyOf(itemSearchIndex.search(text, from, size));
+        synchronized (entries) {
+            entries.put(key, new Entry(items, generation, now));
+        }
+        return items;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final String query;
+        private final int from;
+        private final int size;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final List<ItemDto> items;
+        private final long generation;
+        private final long createdAt;
+    }
+}
@@ -0,0 +1,447 @@
+package ru.practicum.shareit.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Триграммный индекс вещей для поиска и подсказок. Снимок с диска используется, только если
+ * count, max(id) и sum(version) вещей в БД совпадают с записанными в нём. Индекс свой у каждого
+ * экземпляра сервера; изменения с других экземпляров подхватываются по той же сверке раз в
+ * shareit.search-index.refresh.
+ */
+@Component
+@Slf4j
+public class ItemSearchIndex {
+    private static final int GRAM = 3;
+    private static final int MAGIC = 0x53484958;
+    private static final int FORMAT = 2;
+    private static final int CLEAN_OFFSET = 8;
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8 + 8 + 4;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ItemRepository itemRepository;
+    private final Path snapshot;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final NavigableMap<String, Integer> terms = new TreeMap<>();
+    private volatile long generation;
+    // изменения, пришедшие во время перестроения; повторяются поверх прочитанного из БД
+    private List<Item> replay;
+
+    public ItemSearchIndex(ItemRepository itemRepository,
+                           @Value("${shareit.search-index.snapshot:}") String snapshot) {
+        this.itemRepository = itemRepository;
+        this.snapshot = snapshot.isBlank() ? null : Path.of(snapshot);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!loadSnapshot()) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.search-index.refresh:30000}",
+            initialDelayString = "${shareit.search-index.refresh:30000}")
+    public void refresh() {
+        long count;
+        long maxId = 0;
+        long versionSum = 0;
+        lock.readLock().lock();
+        try {
+            count = docs.size();
+            for (Doc doc : docs.values()) {
+                maxId = Math.max(maxId, doc.id);
+                versionSum += doc.version;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ItemWatermark watermark = itemRepository.getWatermark();
+        if (count != watermark.getCount() || maxId != watermark.getMaxId()
+                || versionSum != watermark.getVersionSum()) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        List<Item> changes = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            replay = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Item> items;
+        try {
+            items = itemRepository.findAll();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+            terms.clear();
+            items.forEach(item -> add(Doc.of(item)));
+            replay = null;
+            // из БД могла прийти уже более новая версия, записанная другим экземпляром
+            changes.stream()
+                    .filter(item -> !docs.containsKey(item.getId())
+                            || docs.get(item.getId()).version <= Doc.of(item).version)
+                    .forEach(this::replace);
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс вещей построен по БД: {} вещей", items.size());
+    }
+
+    public void put(Item item) {
+        lock.writeLock().lock();
+        try {
+            replace(item);
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет пачку вещей под одной блокировкой записи, номер версии растёт один раз.
+     */
+    public void putAll(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            items.forEach(this::replace);
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Растёт при каждом изменении индекса; по нему сбрасывается кэш поиска.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Доступные вещи с text в названии или описании; совпадения в названии выше.
+     */
+    public List<ItemDto> search(String text, int from, int size) {
+        String query = normalize(text);
+        lock.readLock().lock();
+        try {
+            return candidates(query).stream()
+                    .filter(doc -> doc.available && doc.matches(query))
+                    .sorted(Comparator.comparingInt((Doc doc) -> -doc.score(query)).thenComparing(doc -> doc.id))
+                    .skip(from)
+                    .limit(size)
+                    .map(Doc::toDto)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * До limit самых частых слов из названий доступных вещей, начинающихся с prefix.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Comparator<Map.Entry<String, Integer>> order = Map.Entry.<String, Integer>comparingByValue()
+                    .reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+            PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(order.reversed());
+            for (Map.Entry<String, Integer> term : terms.subMap(key, true, key + Character.MAX_VALUE, false).entrySet()) {
+                top.add(term);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            return top.stream()
+                    .sorted(order)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            List<byte[]> encoded = new ArrayList<>(docs.size() * 2);
+            long size = HEADER_SIZE;
+            long maxId = 0;
+            long versionSum = 0;
+            for (Doc doc : docs.values()) {
+                byte[] name = doc.name.getBytes(StandardCharsets.UTF_8);
+                byte[] description = doc.description.getBytes(StandardCharsets.UTF_8);
+                encoded.add(name);
+                encoded.add(description);
+                size += 8 + 8 + 1 + 8 + 4 + name.length + 4 + description.length;
+                maxId = Math.max(maxId, doc.id);
+                versionSum += doc.version;
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(FORMAT).put((byte) 1).putLong(maxId).putLong(versionSum)
+                        .putInt(docs.size());
+                int i = 0;
+                for (Doc doc : docs.values()) {
+                    buffer.putLong(doc.id).putLong(doc.version).put((byte) (doc.available ? 1 : 0))
+                            .putLong(doc.requestId == null ? -1 : doc.requestId);
+                    putBytes(buffer, encoded.get(i++));
+                    putBytes(buffer, encoded.get(i++));
+                }
+                buffer.force();
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Поисковый индекс вещей сохранён в {}: {} вещей", snapshot, docs.size());
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить поисковый индекс вещей в {}", snapshot, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean loadSnapshot() {
+        if (snapshot == null || !Files.exists(snapshot)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.get() != 1) {
+                log.info("Снимок поискового индекса {} неполный или другого формата", snapshot);
+                return false;
+            }
+            long maxId = buffer.getLong();
+            long versionSum = buffer.getLong();
+            int count = buffer.getInt();
+            // любое изменение вещи через JPA увеличивает её version, поэтому сумма версий меняется
+            ItemWatermark watermark = itemRepository.getWatermark();
+            if (count != watermark.getCount() || maxId != watermark.getMaxId()
+                    || versionSum != watermark.getVersionSum()) {
+                log.info("Снимок поискового индекса {} не соответствует таблице items", snapshot);
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                docs.clear();
+                postings.clear();
+                terms.clear();
+                for (int i = 0; i < count; i++) {
+                    long id = buffer.getLong();
+                    long version = buffer.getLong();
+                    boolean available = buffer.get() == 1;
+                    long requestId = buffer.getLong();
+                    add(new Doc(id, version, getString(buffer), getString(buffer), available,
+                            requestId < 0 ? null : requestId));
+                }
+                generation++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // дальнейшие изменения в снимок не попадут: до штатной остановки он считается неполным
+            buffer.put(CLEAN_OFFSET, (byte) 0);
+            buffer.force();
+            log.info("Поисковый индекс вещей загружен из {}: {} вещей", snapshot, count);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось прочитать снимок поискового индекса {}", snapshot, e);
+            return false;
+        }
+    }
+
+    private Collection<Doc> candidates(String query) {
+        if (query.length() < GRAM) {
+            return docs.values();
+        }
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<Doc> found = new ArrayList<>();
+        for (Long id : lists.get(0)) {
+            if (lists.stream().allMatch(ids -> ids.contains(id))) {
+                found.add(docs.get(id));
+            }
+        }
+        return found;
+    }
+
+    private void replace(Item item) {
+        if (replay != null) {
+            replay.add(item);
+        }
+        Doc doc = Doc.of(item);
+        Doc old = docs.get(doc.id);
+        if (old != null && old.available) {
+            removePostings(old);
+        }
+        add(doc);
+    }
+
+    private void add(Doc doc) {
+        docs.put(doc.id, doc);
+        if (doc.available) {
+            doc.grams().forEach(gram -> postings.computeIfAbsent(gram, key -> new HashSet<>()).add(doc.id));
+            doc.terms().forEach(term -> terms.merge(term, 1, Integer::sum));
+        }
+    }
+
+    private void removePostings(Doc doc) {
+        doc.grams().forEach(gram -> {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(doc.id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        });
+        doc.terms().forEach(term -> terms.computeIfPresent(term, (key, count) -> count > 1 ? count - 1 : null));
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Doc {
+        private final Long id;
+        private final long version;
+        private final String name;
+        private final String description;
+        private final boolean available;
+        private final Long requestId;
+        private final String nameKey;
+        private final String descriptionKey;
+
+        Doc(Long id, long version, String name, String description, boolean available, Long requestId) {
+            this.id = id;
+            this.version = version;
+            this.name = name;
+            this.description = description;
+            this.available = available;
+            this.requestId = requestId;
+            this.nameKey = normalize(name);
+            this.descriptionKey = normalize(description);
+        }
+
+        static Doc of(Item item) {
+            // версия вещи, записанной мимо JPA, в БД берётся по умолчанию равной 0
+            return new Doc(item.getId(), item.getVersion() == null ? 0 : item.getVersion(), item.getName(),
+                    item.getDescription(), Boolean.TRUE.equals(item.getAvailable()), item.getRequestId());
+        }
+
+        Set<String> grams() {
+            Set<String> grams = ItemSearchIndex.grams(nameKey);
+            grams.addAll(ItemSearchIndex.grams(descriptionKey));
+            return grams;
+        }
+
+        Set<String> terms() {
+            Set<String> terms = new HashSet<>(Arrays.asList(TOKEN_SEPARATOR.split(nameKey)));
+            terms.remove("");
+            return terms;
+        }
+
+        boolean matches(String query) {
+            return nameKey.contains(query) || descriptionKey.contains(query);
+        }
+
+        int score(String query) {
+            if (nameKey.startsWith(query)) {
+                return 3;
+            }
+            return nameKey.contains(query) ? 2 : 1;
+        }
+
+        ItemDto toDto() {
+            ItemDto itemDto = new ItemDto();
+            itemDto.setId(id);
+            itemDto.setName(name);
+            itemDto.setDescription(description);
+            itemDto.setAvailable(available);
+            itemDto.setRequestId(requestId);
+            return itemDto;
+        }
+    }
+}
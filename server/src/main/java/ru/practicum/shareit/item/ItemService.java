@@ -1,23 +1,39 @@
 package ru.practicum.shareit.item;
 
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
+import ru.practicum.shareit.item.dto.ItemsResultDto;
 
-import java.util.Collection;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface ItemService {
 
     ItemDto createItem(Long userId, ItemDto itemDto);
 
+    ItemImportResultDto importItems(Long userId, BufferedReader reader, ItemImporter.Format format) throws IOException;
+
     ItemDto updateItem(Long userId, Long id, ItemDto itemDto);
 
-    Collection<ItemDto> findAllItems(Long userId);
+    List<ItemDto> findAllItems(Long userId, int from, int size, String cursor);
+
+    ItemsResultDto getItems(Long userId, List<Long> ids);
 
     ItemDto getItemById(Long id);
 
-    Collection<ItemDto> search(String text);
+    List<ItemDto> search(String text, int from, int size);
+
+    List<String> suggest(String prefix, int limit);
 
     ItemDto getItem(Long userId, Long id);
 
     CommentDto createComment(Long authorId, Long itemId, CommentDto commentDto);
+
+    List<CommentDto> getComments(Long itemId, String cursor, int size);
+
+    List<ItemAvailabilityDto> getAvailability(List<Long> itemIds, LocalDateTime from, LocalDateTime to);
 }
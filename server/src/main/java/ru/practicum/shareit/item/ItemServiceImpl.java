@@ -2,27 +2,46 @@ package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingInterval;
 import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.CompletedBookingsCache;
+import ru.practicum.shareit.booking.NearestBookings;
+import ru.practicum.shareit.booking.NearestBookingsCache;
+import ru.practicum.shareit.booking.Status;
 import ru.practicum.shareit.booking.dto.BookingMapper;
 import ru.practicum.shareit.exception.BadRequest;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentMapper;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
+import ru.practicum.shareit.item.dto.ItemsResultDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.dto.PeriodDto;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.ItemRequestFeed;
 import ru.practicum.shareit.user.User;
 import ru.practicum.shareit.user.UserRepository;
 import ru.practicum.shareit.utils.Constants;
+import ru.practicum.shareit.utils.PageCursor;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,6 +53,12 @@ public class ItemServiceImpl implements ItemService {
     private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
+    private final NearestBookingsCache nearestBookingsCache;
+    private final CompletedBookingsCache completedBookingsCache;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ItemSearchCache itemSearchCache;
+    private final ItemImporter itemImporter;
+    private final ItemRequestFeed itemRequestFeed;
 
     @Override
     public ItemDto createItem(Long userId, ItemDto itemDto) {
@@ -49,58 +74,122 @@ public class ItemServiceImpl implements ItemService {
         Item item = ItemMapper.toItem(user.get(), itemDto);
         item.setOwner(user.get());
         item = itemRepository.save(item);
+        itemSearchIndex.put(item);
+        itemRequestFeed.putItems(List.of(item));
         log.info("создан {}", item);
         return ItemMapper.toDto(item);
     }
 
+    @Override
+    public ItemImportResultDto importItems(Long userId, BufferedReader reader, ItemImporter.Format format)
+            throws IOException {
+        User owner = userRepository.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+        ItemImportResultDto result = itemImporter.importItems(owner, reader, format);
+        log.info("Импортировано {} вещей пользователя {}, отклонено строк: {}", result.getImported(), userId,
+                result.getFailed());
+        return result;
+    }
+
     @Override
     public ItemDto updateItem(Long userId, Long id, ItemDto itemDto) {
         if (userId == null) {
             log.warn("Ошибка - отсутствует id пользователя в запросе");
             throw new NotFoundException("Ошибка - отсутствует id пользователя");
         }
-        Optional<Item> itemOptional = itemRepository.findById(id);
-        Item item = itemOptional.orElse(null);
-        if (item != null && item.getOwner().getId().equals(userId)) {
-            itemDto.setId(id);
-            if (itemDto.getName() == null) itemDto.setName(item.getName());
-            if (itemDto.getDescription() == null) itemDto.setDescription(item.getDescription());
-            if (itemDto.getAvailable() == null) itemDto.setAvailable(item.getAvailable());
-            if (itemDto.getRequestId() != null) item.setRequestId(itemDto.getRequestId());
-            Optional<User> user = userRepository.findById(userId);
-            if (user.isPresent()) {
-                Item itemUpdate = ItemMapper.toItem(user.get(), itemDto);
-                itemUpdate.setOwner(user.get());
-                Item itemReturn = itemRepository.save(itemUpdate);
-                log.info("обновлен {}", itemReturn);
-                return ItemMapper.toDto(itemReturn);
-            } else {
-                throw new NotFoundException("Пользователь не найден");
-            }
-        } else {
+        int updated = itemRepository.updatePartially(id, userId, itemDto.getName(), itemDto.getDescription(),
+                itemDto.getAvailable(), itemDto.getRequestId());
+        if (updated == 0) {
             throw new NotFoundException("Вещь не найдена");
         }
+        Item itemReturn = itemRepository.findById(id).orElseThrow(() -> new NotFoundException("Вещь не найдена"));
+        nearestBookingsCache.invalidate(id);
+        itemSearchIndex.put(itemReturn);
+        itemRequestFeed.putItems(List.of(itemReturn));
+        log.info("обновлен {}", itemReturn);
+        return ItemMapper.toDto(itemReturn);
     }
 
     @Override
-    public List<ItemDto> findAllItems(Long userId) {
-        Optional<User> owner = userRepository.findById(userId);
-        List<Item> itemList = itemRepository.findByOwnerOrderById(owner);
+    public List<ItemDto> findAllItems(Long userId, int from, int size, String cursor) {
+        List<Item> itemList = cursor == null
+                ? itemRepository.findByOwnerIdOrderById(userId, PageRequest.of(from > 0 ? from / size : 0, size))
+                : itemRepository.findByOwnerIdAndIdGreaterThanOrderById(userId, PageCursor.decode(cursor).getId(),
+                PageRequest.of(0, size));
+        if (itemList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return toDtosWithBookings(itemList, itemList);
+    }
+
+    @Override
+    public ItemsResultDto getItems(Long userId, List<Long> ids) {
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+        Map<Long, Item> found = itemRepository.findAllWithOwnerByIdIn(ids).stream()
+                .collect(Collectors.toMap(Item::getId, item -> item));
+        List<Long> missing = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        List<Item> items = ids.stream()
+                .distinct()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (items.isEmpty()) {
+            return new ItemsResultDto(List.of(), missing);
+        }
+        List<Item> owned = items.stream()
+                .filter(item -> item.getOwner().getId().equals(userId))
+                .collect(Collectors.toList());
+        return new ItemsResultDto(toDtosWithBookings(items, owned), missing);
+    }
+
+    /**
+     * DTO вещей с отзывами, для owned - и с ближайшими бронями; число запросов не зависит от числа вещей.
+     */
+    private List<ItemDto> toDtosWithBookings(List<Item> itemList, List<Item> owned) {
+        List<Long> itemIds = itemList.stream().map(Item::getId).collect(Collectors.toList());
+        List<Long> ownedIds = owned.stream().map(Item::getId).collect(Collectors.toList());
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Booking> nextBookings = new HashMap<>();
+        Map<Long, Booking> lastBookings = new HashMap<>();
+        List<Long> nearestIds = ownedIds.isEmpty() ? List.of()
+                : bookingRepository.findNextAndLastIds(ownedIds, now, Constants.STATUS_APPROVED);
+        if (!nearestIds.isEmpty()) {
+            for (Booking booking : bookingRepository.findWithBookerByIdIn(nearestIds)) {
+                (booking.getStart().isAfter(now) ? nextBookings : lastBookings).put(booking.getItem().getId(), booking);
+            }
+        }
+        List<Long> withoutLast = ownedIds.stream()
+                .filter(id -> !lastBookings.containsKey(id))
+                .collect(Collectors.toList());
+        if (!withoutLast.isEmpty()) {
+            List<Long> archivedIds = bookingRepository.findLastArchivedIds(withoutLast, now, Constants.STATUS_APPROVED);
+            if (!archivedIds.isEmpty()) {
+                bookingRepository.findArchivedByIdIn(archivedIds)
+                        .forEach(booking -> lastBookings.put(booking.getItem().getId(), booking));
+            }
+        }
+        List<Long> commentIds = commentRepository.findLatestIdsByItemIdIn(itemIds, Constants.INLINE_COMMENTS);
+        Map<Long, List<CommentDto>> comments = commentIds.isEmpty() ? Map.of()
+                : commentRepository.findWithAuthorByIdIn(commentIds).stream()
+                .collect(Collectors.groupingBy(comment -> comment.getItem().getId(),
+                        Collectors.mapping(CommentMapper::toDto, Collectors.toList())));
         List<ItemDto> itemDtoList = new ArrayList<>();
         for (Item item : itemList) {
             ItemDto itemDto = ItemMapper.toDto(item);
-            Booking next = bookingRepository.getNextBooking(item.getId(), LocalDateTime.now(), Constants.STATUS_APPROVED).orElse(null);
-            Booking last = bookingRepository.getLastBooking(item.getId(), LocalDateTime.now(), Constants.STATUS_APPROVED).orElse(null);
+            Booking next = nextBookings.get(item.getId());
+            Booking last = lastBookings.get(item.getId());
             if (next != null) {
                 itemDto.setNextBooking(BookingMapper.toDto(next));
             }
             if (last != null) {
                 itemDto.setLastBooking(BookingMapper.toDto(last));
             }
-            List<CommentDto> comments = commentRepository.getCommentsForItem(itemDto.getId()).stream()
-                    .map(CommentMapper::toDto)
-                    .collect(Collectors.toList());
-            itemDto.setComments(comments);
+            itemDto.setComments(comments.getOrDefault(item.getId(), new ArrayList<>()));
+            itemDto.setCommentCount(item.getCommentCount());
             itemDtoList.add(itemDto);
         }
         return itemDtoList;
@@ -113,25 +202,40 @@ public class ItemServiceImpl implements ItemService {
         if (item.isPresent()) {
             ItemDto itemDto = ItemMapper.toDto(item.get());
             if (item.get().getOwner().getId().equals(userId)) {
-                Booking next = bookingRepository.getNextBooking(item.get().getId(), LocalDateTime.now(), Constants.STATUS_APPROVED).orElse(null);
-                Booking last = bookingRepository.getLastBooking(item.get().getId(), LocalDateTime.now(), Constants.STATUS_APPROVED).orElse(null);
-                if (next != null) {
-                    itemDto.setNextBooking(BookingMapper.toDto(next));
-                }
-                if (last != null) {
-                    itemDto.setLastBooking(BookingMapper.toDto(last));
-                }
+                NearestBookings nearest = nearestBookingsCache.get(id);
+                itemDto.setNextBooking(nearest.getNext());
+                itemDto.setLastBooking(nearest.getLast());
             }
-            List<CommentDto> comments = commentRepository.getCommentsForItem(itemDto.getId()).stream()
+            List<CommentDto> comments = item.get().getCommentCount() == 0 ? new ArrayList<>()
+                    : commentRepository.findLatestByItemId(id, PageRequest.of(0, Constants.INLINE_COMMENTS)).stream()
                     .map(CommentMapper::toDto)
                     .collect(Collectors.toList());
             itemDto.setComments(comments);
+            itemDto.setCommentCount(item.get().getCommentCount());
             return itemDto;
         } else {
             throw new NotFoundException("Тема не найдена");
         }
     }
 
+    @Override
+    public List<CommentDto> getComments(Long itemId, String cursor, int size) {
+        if (!itemRepository.existsById(itemId)) {
+            throw new NotFoundException("Вещь не найдена");
+        }
+        List<Comment> comments;
+        if (cursor == null) {
+            comments = commentRepository.findLatestByItemId(itemId, PageRequest.of(0, size));
+        } else {
+            PageCursor position = PageCursor.decode(cursor);
+            comments = commentRepository.findByItemIdBefore(itemId, position.getPoint(), position.getId(),
+                    PageRequest.of(0, size));
+        }
+        return comments.stream()
+                .map(CommentMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public ItemDto getItemById(Long id) {
         Optional<Item> item = itemRepository.findById(id);
@@ -143,15 +247,21 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
-    public Collection<ItemDto> search(String text) {
+    public List<ItemDto> search(String text, int from, int size) {
         if (text.isEmpty()) {
             return new ArrayList<>();
         } else {
-            return itemRepository.search(text).stream().map(ItemMapper::toDto).collect(Collectors.toList());
+            return itemSearchCache.search(text, from, size);
         }
     }
 
     @Override
+    public List<String> suggest(String prefix, int limit) {
+        return itemSearchIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    @Transactional
     public CommentDto createComment(Long authorId, Long itemId, CommentDto commentDto) {
         Optional<User> authorOption = userRepository.findById(authorId);
         if (authorOption.isEmpty()) {
@@ -163,17 +273,75 @@ public class ItemServiceImpl implements ItemService {
             throw new NotFoundException("Вещь не найдена");
         }
         Item item = itemOption.get();
-        String bookingStatus = bookingRepository.checkStatusBooking(authorId, itemId, LocalDateTime.now());
-        if (bookingStatus != null) {
+        if (completedBookingsCache.hasCompletedBooking(authorId, itemId)) {
             Comment comment = new Comment();
             comment.setAuthor(author);
-            comment.setCreated(LocalDateTime.now());
+            // с точностью столбца БД, чтобы курсор из ответа совпадал с сохранённым значением
+            comment.setCreated(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
             comment.setItem(item);
             comment.setText(commentDto.getText());
             Comment saveComment = commentRepository.save(comment);
+            itemRepository.incrementCommentCount(itemId);
             return CommentMapper.toDto(saveComment);
         } else {
             throw new BadRequest("Неверные параметры");
         }
     }
+
+    @Override
+    public List<ItemAvailabilityDto> getAvailability(List<Long> itemIds, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            log.warn("Начало периода не раньше конца");
+            throw new BadRequest("Ошибка даты");
+        }
+        if (from.plusDays(Constants.MAX_AVAILABILITY_DAYS).isBefore(to)) {
+            log.warn("Период длиннее {} дней", Constants.MAX_AVAILABILITY_DAYS);
+            throw new BadRequest("Период не может быть длиннее " + Constants.MAX_AVAILABILITY_DAYS + " дней");
+        }
+        Set<Long> found = itemRepository.findAllById(itemIds).stream()
+                .map(Item::getId)
+                .collect(Collectors.toSet());
+        List<Long> missing = itemIds.stream()
+                .filter(id -> !found.contains(id))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new NotFoundException("Вещи не найдены: " + missing);
+        }
+        Map<Long, List<BookingInterval>> bookingsByItem = bookingRepository.findIntervalsInRange(itemIds,
+                        List.of(String.valueOf(Status.WAITING), String.valueOf(Status.APPROVED)), from, to).stream()
+                .collect(Collectors.groupingBy(BookingInterval::getItemId));
+        return itemIds.stream()
+                .distinct()
+                .map(itemId -> toAvailability(itemId, bookingsByItem.getOrDefault(itemId, List.of()), from, to))
+                .collect(Collectors.toList());
+    }
+
+    private ItemAvailabilityDto toAvailability(Long itemId, List<BookingInterval> bookings,
+                                               LocalDateTime from, LocalDateTime to) {
+        List<PeriodDto> busy = new ArrayList<>();
+        for (BookingInterval booking : bookings) {
+            LocalDateTime start = booking.getStart().isBefore(from) ? from : booking.getStart();
+            LocalDateTime end = booking.getEnd().isAfter(to) ? to : booking.getEnd();
+            PeriodDto last = busy.isEmpty() ? null : busy.get(busy.size() - 1);
+            if (last != null && !start.isAfter(last.getEnd())) {
+                if (end.isAfter(last.getEnd())) {
+                    last.setEnd(end);
+                }
+            } else {
+                busy.add(new PeriodDto(start, end));
+            }
+        }
+        List<PeriodDto> free = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (PeriodDto period : busy) {
+            if (cursor.isBefore(period.getStart())) {
+                free.add(new PeriodDto(cursor, period.getStart()));
+            }
+            cursor = period.getEnd();
+        }
+        if (cursor.isBefore(to)) {
+            free.add(new PeriodDto(cursor, to));
+        }
+        return new ItemAvailabilityDto(itemId, free, busy);
+    }
 }
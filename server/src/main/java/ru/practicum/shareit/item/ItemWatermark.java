@@ -0,0 +1,10 @@
+package ru.practicum.shareit.item;
+
+public interface ItemWatermark {
+
+    Long getCount();
+
+    Long getMaxId();
+
+    Long getVersionSum();
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ItemAvailabilityDto {
+    private Long itemId;
+    private List<PeriodDto> free;
+    private List<PeriodDto> busy;
+}
@@ -19,4 +19,5 @@ public class ItemDto {
     private BookingDto nextBooking;
     private BookingDto lastBooking;
     private List<CommentDto> comments;
+    private Long commentCount;
 }
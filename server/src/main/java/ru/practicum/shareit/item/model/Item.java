@@ -21,6 +21,10 @@ public class Item {
     private Boolean available;
     @Column(name = "request_id")
     private Long requestId;
+    @Column(name = "comment_count", updatable = false)
+    private Long commentCount = 0L;
     @ManyToOne
     private User owner;
+    @Version
+    private Long version;
 }
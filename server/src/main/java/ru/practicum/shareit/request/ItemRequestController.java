@@ -6,9 +6,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.utils.PageCursor;
 import ru.practicum.shareit.utils.Variables;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -43,7 +46,14 @@ public class ItemRequestController {
     @ResponseStatus(HttpStatus.OK)
     public Collection<ItemRequestDto> findAllRequests(@RequestHeader(value = Variables.USER_ID) Long userId,
                                                       @RequestParam(value = "from", defaultValue = "0") int from,
-                                                      @RequestParam(value = "size", defaultValue = "10") int size) {
-        return itemRequestService.findAllItemRequests(userId, from, size);
+                                                      @RequestParam(value = "size", defaultValue = "10") int size,
+                                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                                      HttpServletResponse response) {
+        List<ItemRequestDto> requests = itemRequestService.findAllItemRequests(userId, from, size, cursor);
+        String next = PageCursor.next(requests, size, request -> new PageCursor(request.getCreated(), request.getId()));
+        if (next != null) {
+            response.setHeader(Variables.NEXT_CURSOR, next);
+        }
+        return requests;
     }
 }
@@ -0,0 +1,272 @@
+package ru.practicum.shareit.request;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.UserDto;
+import ru.practicum.shareit.user.UserMapper;
+import ru.practicum.shareit.utils.PageCursor;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Начало списка GET /requests/all: maxEntries самых новых запросов с вещами, от новых к старым.
+ * Если страница не помещается в окно целиком, возвращается null и она читается из БД.
+ * Лента своя у каждого экземпляра сервера: изменения с других экземпляров появляются
+ * после очередного перечитывания из БД раз в shareit.request-feed.refresh.
+ */
+@Component
+@Slf4j
+public class ItemRequestFeed {
+    private final ItemRequestRepository itemRequestRepository;
+    private final ItemRepository itemRepository;
+    private final int maxEntries;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Position, Entry> entries = new TreeMap<>(Position.ORDER);
+    private final Map<Long, Entry> byRequest = new HashMap<>();
+    private final Map<Long, Entry> byItem = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    // лента содержит все запросы из БД, а не только последние maxEntries
+    private boolean complete = true;
+    // изменения, пришедшие во время перечитывания; повторяются поверх загруженного из БД
+    private List<Runnable> replay;
+
+    public ItemRequestFeed(ItemRequestRepository itemRequestRepository,
+                           ItemRepository itemRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${shareit.request-feed.max-entries:1000}") int maxEntries) {
+        this.itemRequestRepository = itemRequestRepository;
+        this.itemRepository = itemRepository;
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("shareit.request-feed.max-entries должно быть больше 0");
+        }
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("shareit.request-feed", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.request-feed", "result", "miss");
+        meterRegistry.gauge("shareit.request-feed.size", byRequest, Map::size);
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${shareit.request-feed.refresh:10000}",
+            initialDelayString = "${shareit.request-feed.refresh:10000}")
+    public void rebuild() {
+        List<Runnable> changes = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            replay = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<ItemRequest> latest;
+        Map<Long, List<Item>> items;
+        try {
+            latest = itemRequestRepository.findLatestWithUser(PageRequest.of(0, maxEntries + 1));
+            items = latest.isEmpty() ? Map.of()
+                    : itemRepository.findAllWithOwnerByRequestIdIn(latest.stream()
+                            .limit(maxEntries)
+                            .map(ItemRequest::getId)
+                            .collect(Collectors.toList())).stream()
+                    .collect(Collectors.groupingBy(Item::getRequestId));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        List<ItemRequest> window = latest.size() > maxEntries ? latest.subList(0, maxEntries) : latest;
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            byRequest.clear();
+            byItem.clear();
+            complete = latest.size() <= maxEntries;
+            window.forEach(itemRequest -> {
+                Entry entry = addEntry(itemRequest);
+                items.getOrDefault(itemRequest.getId(), List.of()).forEach(item -> attach(entry, item));
+            });
+            replay = null;
+            changes.forEach(Runnable::run);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Лента запросов перечитана: {} запросов, полная: {}", window.size(), complete);
+    }
+
+    public void add(ItemRequest itemRequest) {
+        lock.writeLock().lock();
+        try {
+            record(() -> add(itemRequest));
+            if (byRequest.containsKey(itemRequest.getId())) {
+                return;
+            }
+            Position position = new Position(itemRequest.getCreated(), itemRequest.getId());
+            if (!complete && (entries.isEmpty() || Position.ORDER.compare(position, entries.lastKey()) > 0)) {
+                return;
+            }
+            addEntry(itemRequest);
+            while (entries.size() > maxEntries) {
+                Entry eldest = entries.pollLastEntry().getValue();
+                byRequest.remove(eldest.id);
+                eldest.items.keySet().forEach(byItem::remove);
+                complete = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putItems(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            record(() -> putItems(items));
+            for (Item item : items) {
+                Entry previous = byItem.remove(item.getId());
+                if (previous != null) {
+                    previous.items.remove(item.getId());
+                }
+                Entry entry = item.getRequestId() == null ? null : byRequest.get(item.getRequestId());
+                if (entry != null) {
+                    attach(entry, item);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateRequestor(UserDto user) {
+        lock.writeLock().lock();
+        try {
+            record(() -> updateRequestor(user));
+            entries.values().stream()
+                    .filter(entry -> entry.requestor.getId().equals(user.getId()))
+                    .forEach(entry -> entry.requestor = user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ItemRequestDto> page(Long userId, int from, int size) {
+        lock.readLock().lock();
+        try {
+            return collect(entries.values(), userId, (long) (from > 0 ? from / size : 0) * size, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<ItemRequestDto> pageBefore(Long userId, PageCursor cursor, int size) {
+        if (cursor.getPoint() == null) {
+            misses.increment();
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Position position = new Position(cursor.getPoint(), cursor.getId());
+            return collect(entries.tailMap(position, false).values(), userId, 0, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // неполная страница из урезанной ленты могла бы продолжиться запросами за её окном
+    private List<ItemRequestDto> collect(Collection<Entry> source, Long userId, long skip, int size) {
+        List<ItemRequestDto> page = new ArrayList<>(size);
+        long skipped = 0;
+        for (Entry entry : source) {
+            if (entry.requestor.getId().equals(userId)) {
+                continue;
+            }
+            if (skipped++ < skip) {
+                continue;
+            }
+            page.add(entry.toDto());
+            if (page.size() == size) {
+                break;
+            }
+        }
+        if (page.size() < size && !complete) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return page;
+    }
+
+    private void record(Runnable change) {
+        if (replay != null) {
+            replay.add(change);
+        }
+    }
+
+    private Entry addEntry(ItemRequest itemRequest) {
+        Entry entry = new Entry(itemRequest.getId(), itemRequest.getDescription(),
+                UserMapper.toDto(itemRequest.getUser()), itemRequest.getCreated());
+        entries.put(new Position(entry.created, entry.id), entry);
+        byRequest.put(entry.id, entry);
+        return entry;
+    }
+
+    private void attach(Entry entry, Item item) {
+        entry.items.put(item.getId(), ItemMapper.toDto(item));
+        byItem.put(item.getId(), entry);
+    }
+
+    private static class Position {
+        private static final Comparator<Position> ORDER = Comparator.comparing((Position position) -> position.created)
+                .thenComparing(position -> position.id)
+                .reversed();
+
+        private final LocalDateTime created;
+        private final Long id;
+
+        Position(LocalDateTime created, Long id) {
+            this.created = created;
+            this.id = id;
+        }
+    }
+
+    private static class Entry {
+        private final Long id;
+        private final String description;
+        private final LocalDateTime created;
+        private final NavigableMap<Long, ItemDto> items = new TreeMap<>();
+        private UserDto requestor;
+
+        Entry(Long id, String description, UserDto requestor, LocalDateTime created) {
+            this.id = id;
+            this.description = description;
+            this.requestor = requestor;
+            this.created = created;
+        }
+
+        ItemRequestDto toDto() {
+            return new ItemRequestDto(id, description, requestor, created, new ArrayList<>(items.values()));
+        }
+    }
+}
@@ -2,15 +2,29 @@ package ru.practicum.shareit.request;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import ru.practicum.shareit.user.User;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long> {
 
-    List<ItemRequest> findByUser(User user);
+    @Query("select r from ItemRequest r join fetch r.user where r.user.id = :userId order by r.created, r.id")
+    List<ItemRequest> findWithUserByUserId(@Param("userId") Long userId);
 
     ItemRequest findAllById(Long requestId);
 
-    List<ItemRequest> findAllByUserIdIsNot(Long userId, Pageable page);
+    @Query("select r from ItemRequest r join fetch r.user order by r.created desc, r.id desc")
+    List<ItemRequest> findLatestWithUser(Pageable page);
+
+    @Query("select r from ItemRequest r join fetch r.user where r.user.id <> :userId " +
+            "order by r.created desc, r.id desc")
+    List<ItemRequest> findAllByUserIdIsNot(@Param("userId") Long userId, Pageable page);
+
+    @Query("select r from ItemRequest r join fetch r.user where r.user.id <> :userId " +
+            "and (r.created < :created or (r.created = :created and r.id < :id)) " +
+            "order by r.created desc, r.id desc")
+    List<ItemRequest> findAllByUserIdIsNotBefore(@Param("userId") Long userId, @Param("created") LocalDateTime created,
+                                                 @Param("id") Long id, Pageable page);
 }
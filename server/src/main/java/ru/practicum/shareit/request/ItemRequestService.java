@@ -12,6 +12,6 @@ public interface ItemRequestService {
 
     ItemRequestDto getItemRequestById(Long userId, Long requestId);
 
-    List<ItemRequestDto> findAllItemRequests(Long userId, int from, int size);
+    List<ItemRequestDto> findAllItemRequests(Long userId, int from, int size, String cursor);
 }
 
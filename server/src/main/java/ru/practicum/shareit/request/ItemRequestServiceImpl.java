@@ -3,7 +3,6 @@ package ru.practicum.shareit.request;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.ItemRepository;
@@ -14,11 +13,13 @@ import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.dto.ItemRequestMapper;
 import ru.practicum.shareit.user.User;
 import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.utils.PageCursor;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -30,31 +31,33 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
     private final ItemRequestRepository itemRequestRepository;
+    private final ItemRequestFeed itemRequestFeed;
 
     @Override
     public List<ItemRequestDto> findItemRequestsOwner(Long userId) {
-        User user = getRequestorUser(userId);
-        List<ItemRequest> itemRequestList = itemRequestRepository.findByUser(user);
-        List<ItemRequestDto> itemRequestDtoList = itemRequestList.stream()
-                .map(ItemRequestMapper::toDto)
-                .collect(Collectors.toList());
-        return sortItemRequestList(addItems(itemRequestDtoList));
-    }
-
-    private List<ItemRequestDto> addItems(List<ItemRequestDto> itemRequestDtoList) {
-        itemRequestDtoList.forEach(requestDto -> {
-            List<Item> itemList = itemRepository.findByRequestId(requestDto.getId());
-            List<ItemDto> itemDtoList = itemList.stream()
-                    .map(ItemMapper::toDto)
-                    .collect(Collectors.toList());
-            requestDto.setItems(itemDtoList);
-        });
-        return itemRequestDtoList;
+        List<ItemRequest> itemRequestList = itemRequestRepository.findWithUserByUserId(userId);
+        if (itemRequestList.isEmpty()) {
+            getRequestorUser(userId);
+        }
+        return toDtosWithItems(itemRequestList);
     }
 
-    private List<ItemRequestDto> sortItemRequestList(List<ItemRequestDto> itemRequestDtoList) {
-        return itemRequestDtoList.stream()
-                .sorted(Comparator.comparing(ItemRequestDto::getCreated))
+    /**
+     * Вещи всех запросов страницы загружаются одним запросом по request_id, порядок запросов сохраняется.
+     */
+    private List<ItemRequestDto> toDtosWithItems(List<ItemRequest> itemRequestList) {
+        if (itemRequestList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> requestIds = itemRequestList.stream()
+                .map(ItemRequest::getId)
+                .collect(Collectors.toList());
+        Map<Long, List<ItemDto>> itemsByRequest = itemRepository.findAllWithOwnerByRequestIdIn(requestIds).stream()
+                .collect(Collectors.groupingBy(Item::getRequestId,
+                        Collectors.mapping(ItemMapper::toDto, Collectors.toList())));
+        return itemRequestList.stream()
+                .map(itemRequest -> ItemRequestMapper.toDto(itemRequest,
+                        itemsByRequest.getOrDefault(itemRequest.getId(), new ArrayList<>())))
                 .collect(Collectors.toList());
     }
 
@@ -67,10 +70,12 @@ public class ItemRequestServiceImpl implements ItemRequestService {
         ItemRequest itemRequest = new ItemRequest();
         User user = getRequestorUser(userId);
         itemRequest.setUser(user);
-        itemRequest.setCreated(LocalDateTime.now());
+        // с точностью столбца БД, чтобы курсоры ленты и курсоры из БД совпадали
+        itemRequest.setCreated(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
         itemRequest.setDescription(itemRequestDto.getDescription());
         itemRequest.setItems(new ArrayList<>());
         itemRequestRepository.save(itemRequest);
+        itemRequestFeed.add(itemRequest);
         return ItemRequestMapper.toDto(itemRequest);
     }
 
@@ -90,13 +95,22 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     }
 
     @Override
-    public List<ItemRequestDto> findAllItemRequests(Long userId, int from, int size) {
+    public List<ItemRequestDto> findAllItemRequests(Long userId, int from, int size, String cursor) {
         getRequestorUser(userId);
-        Sort sort = Sort.by("created");
-        PageRequest page = PageRequest.of(from, size, sort);
-        List<ItemRequest> listItemRequest = itemRequestRepository.findAllByUserIdIsNot(userId, page);
-        return listItemRequest.stream()
-                .map(ItemRequestMapper::toDto)
-                .collect(Collectors.toList());
+        List<ItemRequestDto> fromFeed = cursor == null ? itemRequestFeed.page(userId, from, size)
+                : itemRequestFeed.pageBefore(userId, PageCursor.decode(cursor), size);
+        if (fromFeed != null) {
+            return fromFeed;
+        }
+        List<ItemRequest> listItemRequest;
+        if (cursor == null) {
+            PageRequest page = PageRequest.of(from > 0 ? from / size : 0, size);
+            listItemRequest = itemRequestRepository.findAllByUserIdIsNot(userId, page);
+        } else {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            listItemRequest = itemRequestRepository.findAllByUserIdIsNotBefore(userId, pageCursor.getPoint(),
+                    pageCursor.getId(), PageRequest.of(0, size));
+        }
+        return toDtosWithItems(listItemRequest);
     }
 }
@@ -1,10 +1,12 @@
 package ru.practicum.shareit.request.dto;
 
 import lombok.experimental.UtilityClass;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.user.UserMapper;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 @UtilityClass
@@ -19,4 +21,14 @@ public class ItemRequestMapper {
                 itemRequest.getItems().stream().map(ItemMapper::toDto).collect(Collectors.toList())
         );
     }
+
+    public static ItemRequestDto toDto(ItemRequest itemRequest, List<ItemDto> items) {
+        return new ItemRequestDto(
+                itemRequest.getId(),
+                itemRequest.getDescription(),
+                UserMapper.toDto(itemRequest.getUser()),
+                itemRequest.getCreated(),
+                items
+        );
+    }
 }
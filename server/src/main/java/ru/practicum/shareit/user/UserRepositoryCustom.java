@@ -0,0 +1,6 @@
+package ru.practicum.shareit.user;
+
+public interface UserRepositoryCustom {
+
+    int updatePartially(Long id, String name, String email);
+}
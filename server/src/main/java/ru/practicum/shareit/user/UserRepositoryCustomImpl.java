@@ -0,0 +1,42 @@
+package ru.practicum.shareit.user;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * UPDATE собирается только из переданных полей; без полей проверяется лишь наличие пользователя.
+     */
+    @Override
+    @Transactional
+    public int updatePartially(Long id, String name, String email) {
+        if (name == null && email == null) {
+            return entityManager.find(User.class, id) == null ? 0 : 1;
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = builder.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+        if (name != null) {
+            update.set(user.<String>get("name"), name);
+        }
+        if (email != null) {
+            update.set(user.<String>get("email"), email);
+        }
+        ParameterExpression<Long> idParameter = builder.parameter(Long.class);
+        update.where(builder.equal(user.get("id"), idParameter));
+        int updated = entityManager.createQuery(update)
+                .setParameter(idParameter, id)
+                .executeUpdate();
+        entityManager.clear();
+        return updated;
+    }
+}
@@ -2,9 +2,12 @@ package ru.practicum.shareit.user;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.NearestBookingsCache;
 import ru.practicum.shareit.exception.InvalidEmailException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.request.ItemRequestFeed;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -16,6 +19,8 @@ import java.util.Optional;
 @Slf4j
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final NearestBookingsCache nearestBookingsCache;
+    private final ItemRequestFeed itemRequestFeed;
 
     @Override
     public Collection<UserDto> findAllUsers() {
@@ -38,35 +43,21 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserDto updateUser(Long id, UserDto userDto) {
-        if (userDto.getEmail() != null) {
-            User userCheck = userRepository.findByEmail(userDto.getEmail());
-            if (userCheck == null || userCheck.getId().equals(id)) {
-                User user = UserMapper.toUser(userDto);
-                user.setId(id);
-                Optional<User> userOptional = userRepository.findById(id);
-                if (userOptional.isEmpty()) {
-                    throw new NotFoundException("Пользователь не найден");
-                }
-                if (user.getName() == null) user.setName(userOptional.get().getName());
-                User updateUser = userRepository.save(user);
-                log.info("обновлен {}", updateUser);
-                return UserMapper.toDto(updateUser);
-            } else {
-                throw new InvalidEmailException("E-mail уже существует");
-            }
-        } else {
-            User user = UserMapper.toUser(userDto);
-            user.setId(id);
-            Optional<User> userOptional = userRepository.findById(id);
-            if (userOptional.isEmpty()) {
-                throw new NotFoundException("Пользователь не найден");
-            }
-            if (user.getName() == null) user.setName(userOptional.get().getName());
-            user.setEmail(userOptional.get().getEmail());
-            User updateUser = userRepository.save(user);
-            log.info("обновлен {}", updateUser);
-            return UserMapper.toDto(updateUser);
+        int updated;
+        try {
+            updated = userRepository.updatePartially(id, userDto.getName(), userDto.getEmail());
+        } catch (DataIntegrityViolationException e) {
+            throw new InvalidEmailException("E-mail уже существует");
+        }
+        if (updated == 0) {
+            throw new NotFoundException("Пользователь не найден");
         }
+        User updateUser = userRepository.findById(id).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+        nearestBookingsCache.invalidateBooker(id);
+        UserDto updateUserDto = UserMapper.toDto(updateUser);
+        itemRequestFeed.updateRequestor(updateUserDto);
+        log.info("обновлен {}", updateUser);
+        return updateUserDto;
     }
 
     @Override
@@ -2,4 +2,6 @@ package ru.practicum.shareit.utils;
 
 public class Constants {
     public static final String STATUS_APPROVED = "APPROVED";
+    public static final int INLINE_COMMENTS = 10;
+    public static final int MAX_AVAILABILITY_DAYS = 366;
 }
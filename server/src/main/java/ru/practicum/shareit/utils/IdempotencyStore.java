@@ -0,0 +1,150 @@
+package ru.practicum.shareit.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exception.ConflictException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Результаты создающих запросов по ключу Idempotency-Key и пользователю.
+ * Параллельный дубликат ждёт завершения первого запроса не дольше waitTimeout.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+    private final ObjectWriter writer;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(ObjectMapper objectMapper,
+                            @Value("${shareit.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${shareit.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                            @Value("${shareit.idempotency.max-entries:10000}") int maxEntries) {
+        this.writer = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.maxEntries = maxEntries;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, Long userId, String idempotencyKey, Object request, Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        Key key = new Key(scope, userId, idempotencyKey);
+        String fingerprint = fingerprint(request);
+        Entry entry;
+        boolean first = false;
+        synchronized (entries) {
+            evictExpired();
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(fingerprint, System.nanoTime());
+                entries.put(key, entry);
+                first = true;
+                if (entries.size() > maxEntries) {
+                    Iterator<Entry> eldest = entries.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        if (!first) {
+            if (!entry.fingerprint.equals(fingerprint)) {
+                log.warn("Ключ идемпотентности {} повторно использован с другим запросом", idempotencyKey);
+                throw new ConflictException("Ключ идемпотентности уже использован с другим запросом");
+            }
+            log.info("Повтор запроса с ключом идемпотентности {}", idempotencyKey);
+            return (T) await(entry, idempotencyKey);
+        }
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // SHA-256 от JSON запроса: не зависит от toString() и хранит одинаковый размер для любых тел
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(writer.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить отпечаток запроса", e);
+        }
+    }
+
+    private Object await(Entry entry, String idempotencyKey) {
+        try {
+            return entry.result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Запрос с ключом идемпотентности {} не завершился за {}", idempotencyKey, waitTimeout);
+            throw new ConflictException("Запрос с этим ключом идемпотентности ещё выполняется");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Запрос с этим ключом идемпотентности ещё выполняется");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAt < ttl.toNanos()) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final String scope;
+        private final Long userId;
+        private final String idempotencyKey;
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final long createdAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
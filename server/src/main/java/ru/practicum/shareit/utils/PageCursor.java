@@ -0,0 +1,50 @@
+package ru.practicum.shareit.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.exception.BadRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: дата и id последнего элемента страницы.
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+    private static final String SEPARATOR = "_";
+
+    private final LocalDateTime point;
+    private final Long id;
+
+    public String encode() {
+        String raw = (point == null ? "" : point.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            String point = raw.substring(0, separator);
+            return new PageCursor(point.isEmpty() ? null : LocalDateTime.parse(point),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequest("Неверный курсор: " + cursor);
+        }
+    }
+
+    /**
+     * Курсор следующей страницы или null, если страница неполная и дальше данных нет.
+     */
+    public static <T> String next(List<T> page, int size, Function<T, PageCursor> cursorOf) {
+        if (page.isEmpty() || page.size() < size) {
+            return null;
+        }
+        return cursorOf.apply(page.get(page.size() - 1)).encode();
+    }
+}
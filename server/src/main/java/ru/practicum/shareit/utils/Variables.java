@@ -2,4 +2,6 @@ package ru.practicum.shareit.utils;
 
 public class Variables {
         public static final String USER_ID = "X-Sharer-User-Id";
+        public static final String NEXT_CURSOR = "X-Next-Cursor";
+        public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 }
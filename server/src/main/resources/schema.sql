@@ -1,8 +1,12 @@
 DROP TABLE IF EXISTS users CASCADE;
 DROP TABLE IF EXISTS items CASCADE;
 DROP TABLE IF EXISTS bookings CASCADE;
+DROP TABLE IF EXISTS bookings_archive CASCADE;
 DROP TABLE IF EXISTS requests CASCADE;
 DROP TABLE IF EXISTS comments CASCADE;
+DROP SEQUENCE IF EXISTS bookings_seq;
+
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS users (
   id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
@@ -18,22 +22,38 @@ CREATE TABLE IF NOT EXISTS items (
   available boolean DEFAULT FALSE NOT NULL,
   owner_id BIGINT NOT NULL,
   request_id BIGINT,
+  comment_count BIGINT DEFAULT 0 NOT NULL,
+  version BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT pk_item PRIMARY KEY (id),
   CONSTRAINT fk_items_to_users FOREIGN KEY(owner_id) REFERENCES users(id)
 );
 
 CREATE TABLE IF NOT EXISTS bookings (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT NOT NULL,
   start_date TIMESTAMP WITHOUT TIME ZONE,
   end_date TIMESTAMP WITHOUT TIME ZONE,
   item_id BIGINT,
   booker_id BIGINT,
   status varchar(20),
+  version BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT pk_booking PRIMARY KEY (id),
   CONSTRAINT fk_bookings_to_users FOREIGN KEY(booker_id) REFERENCES users(id),
   CONSTRAINT fk_bookings_to_items FOREIGN KEY(item_id) REFERENCES items(id)
 );
 
+CREATE TABLE IF NOT EXISTS bookings_archive (
+  id BIGINT NOT NULL,
+  start_date TIMESTAMP WITHOUT TIME ZONE,
+  end_date TIMESTAMP WITHOUT TIME ZONE,
+  item_id BIGINT,
+  booker_id BIGINT,
+  status varchar(20),
+  version BIGINT DEFAULT 0 NOT NULL,
+  CONSTRAINT pk_booking_archive PRIMARY KEY (id),
+  CONSTRAINT fk_bookings_archive_to_users FOREIGN KEY(booker_id) REFERENCES users(id),
+  CONSTRAINT fk_bookings_archive_to_items FOREIGN KEY(item_id) REFERENCES items(id)
+);
+
 CREATE TABLE IF NOT EXISTS comments (
   id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
   text varchar(255),
@@ -52,4 +72,20 @@ CREATE TABLE IF NOT EXISTS requests (
   created TIMESTAMP WITHOUT TIME ZONE,
   CONSTRAINT pk_request PRIMARY KEY (id),
   CONSTRAINT fk_request_to_users FOREIGN KEY(user_id) REFERENCES users(id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_start ON bookings (booker_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_status_start ON bookings (booker_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_items_owner ON items (owner_id, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_start ON bookings (item_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_requests_created ON requests (created, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_status_end ON bookings (status, end_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_status_start ON bookings (item_id, status, start_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_end ON bookings (end_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_booker_start ON bookings_archive (booker_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_item_start ON bookings_archive (item_id, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_comments_item_created ON comments (item_id, created DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_item_status_end ON bookings (booker_id, item_id, status, end_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_booker_item_status_end ON bookings_archive (booker_id, item_id, status, end_date);
+CREATE INDEX IF NOT EXISTS idx_items_request ON items (request_id);
+CREATE INDEX IF NOT EXISTS idx_requests_user_created ON requests (user_id, created, id);
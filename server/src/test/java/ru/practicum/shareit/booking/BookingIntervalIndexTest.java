@@ -0,0 +1,206 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingIntervalIndexTest {
+    private static final LocalDateTime START = LocalDateTime.now().plusDays(1).withNano(0);
+
+    private final AtomicLong ids = new AtomicLong();
+    // содержимое таблицы bookings, общей для всех экземпляров сервера
+    private final List<Booking> table = new CopyOnWriteArrayList<>();
+    private BookingRepository bookingRepository;
+    private BookingIntervalIndex index;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findIntervalsByStatusInAndEndAfter(anyCollection(), any()))
+                .thenAnswer(invocation -> intervals(table));
+        when(bookingRepository.findIntervalsInRange(anyCollection(), anyCollection(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Collection<Long> itemIds = invocation.getArgument(0);
+                    LocalDateTime from = invocation.getArgument(2);
+                    LocalDateTime to = invocation.getArgument(3);
+                    return intervals(table.stream()
+                            .filter(booking -> itemIds.contains(booking.getItem().getId()))
+                            .filter(booking -> booking.getStart().isBefore(to) && booking.getEnd().isAfter(from))
+                            .collect(Collectors.toList()));
+                });
+        index = newIndex();
+    }
+
+    @Test
+    void overlappingBookingIsRejected() {
+        index.write(booking(1L, 0, 4), this::save);
+
+        assertThrows(ConflictException.class, () -> index.write(booking(1L, 3, 6), this::save));
+        assertThrows(ConflictException.class, () -> index.write(booking(1L, 1, 2), this::save));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void adjacentBookingsAndOtherItemsDoNotOverlap() {
+        index.write(booking(1L, 0, 4), this::save);
+
+        assertDoesNotThrow(() -> index.write(booking(1L, 4, 6), this::save));
+        assertDoesNotThrow(() -> index.write(booking(2L, 0, 4), this::save));
+    }
+
+    @Test
+    void bookingOfAnotherInstanceIsSeen() {
+        BookingIntervalIndex other = newIndex();
+        other.write(booking(1L, 0, 4), this::save);
+
+        assertThrows(ConflictException.class, () -> index.write(booking(1L, 2, 6), this::save));
+    }
+
+    @Test
+    void bookingCancelledByAnotherInstanceIsDropped() {
+        index.write(booking(1L, 0, 4), this::save);
+        table.clear();
+
+        assertDoesNotThrow(() -> index.write(booking(1L, 2, 6), this::save));
+    }
+
+    @Test
+    void batchRejectsOverlapsWithinBatch() {
+        index.write(booking(1L, 0, 2), this::save);
+        List<Booking> conflicts = new ArrayList<>();
+
+        List<Booking> saved = index.writeAll(List.of(booking(1L, 1, 3), booking(1L, 2, 4), booking(1L, 3, 5),
+                booking(2L, 0, 2)), bookings -> {
+            bookings.forEach(this::save);
+            return bookings;
+        }, conflicts::add);
+
+        assertEquals(List.of(START.plusHours(2), START), saved.stream()
+                .map(Booking::getStart)
+                .collect(Collectors.toList()));
+        assertEquals(2, conflicts.size());
+        assertThrows(ConflictException.class, () -> index.write(booking(1L, 3, 4), this::save));
+        assertDoesNotThrow(() -> index.write(booking(1L, 4, 5), this::save));
+    }
+
+    @Test
+    void concurrentWritesAcceptOneBooking() throws Exception {
+        BookingIntervalIndex other = newIndex();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                BookingIntervalIndex target = i % 2 == 0 ? index : other;
+                Booking booking = booking(1L, i % 3, 4 + i % 3);
+                Callable<Boolean> task = () -> {
+                    ready.await();
+                    try {
+                        target.write(booking, this::save);
+                        return true;
+                    } catch (ConflictException e) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(task));
+            }
+            ready.countDown();
+            long accepted = 0;
+            for (Future<Boolean> result : results) {
+                accepted += result.get() ? 1 : 0;
+            }
+            assertEquals(1, accepted);
+            assertEquals(1, table.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BookingIntervalIndex newIndex() {
+        // блокировка строки вещи в БД общая для экземпляров, как FOR UPDATE в одной базе
+        ItemRepository itemRepository = mock(ItemRepository.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class)) {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                synchronized (table) {
+                    return super.execute(action);
+                }
+            }
+        };
+        BookingIntervalIndex created = new BookingIntervalIndex(bookingRepository, itemRepository, transactionTemplate);
+        created.rebuild();
+        return created;
+    }
+
+    private Booking save(Booking booking) {
+        booking.setId(ids.incrementAndGet());
+        table.add(booking);
+        return booking;
+    }
+
+    private Booking booking(Long itemId, int fromHour, int toHour) {
+        Item item = new Item();
+        item.setId(itemId);
+        return new Booking(null, START.plusHours(fromHour), START.plusHours(toHour), item, null,
+                String.valueOf(Status.WAITING), 0L);
+    }
+
+    private List<BookingInterval> intervals(List<Booking> bookings) {
+        return bookings.stream().map(Interval::new).collect(Collectors.toList());
+    }
+
+    private static class Interval implements BookingInterval {
+        private final Booking booking;
+
+        Interval(Booking booking) {
+            this.booking = booking;
+        }
+
+        @Override
+        public Long getId() {
+            return booking.getId();
+        }
+
+        @Override
+        public Long getItemId() {
+            return booking.getItem().getId();
+        }
+
+        @Override
+        public LocalDateTime getStart() {
+            return booking.getStart();
+        }
+
+        @Override
+        public LocalDateTime getEnd() {
+            return booking.getEnd();
+        }
+    }
+}
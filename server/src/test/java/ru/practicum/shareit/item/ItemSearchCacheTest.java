@@ -0,0 +1,114 @@
+package ru.practicum.shareit.item;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ItemSearchCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private ItemSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ItemRepository itemRepository = mock(ItemRepository.class);
+        when(itemRepository.findAll()).thenReturn(List.of(item(1L, "Дрель")));
+        meterRegistry = new SimpleMeterRegistry();
+        index = new ItemSearchIndex(itemRepository, "");
+        index.load();
+    }
+
+    @Test
+    void repeatedSearchIsHit() {
+        ItemSearchCache cache = cache(Duration.ofMinutes(1), 10);
+
+        List<ItemDto> first = cache.search("ДРЕ", 0, 10);
+
+        assertSame(first, cache.search("дре", 0, 10));
+        assertEquals(1.0, counter("hit"));
+        assertEquals(1.0, counter("miss"));
+    }
+
+    @Test
+    void indexChangeEvictsCachedPage() {
+        ItemSearchCache cache = cache(Duration.ofMinutes(1), 10);
+        cache.search("дре", 0, 10);
+
+        index.put(item(2L, "Дрель ударная"));
+
+        assertEquals(List.of("Дрель", "Дрель ударная"), names(cache.search("дре", 0, 10)));
+        assertEquals(1.0, eviction("invalidated"));
+        assertEquals(0.0, counter("hit"));
+    }
+
+    @Test
+    void expiredPageIsReloaded() {
+        ItemSearchCache cache = cache(Duration.ZERO, 10);
+        cache.search("дре", 0, 10);
+
+        cache.search("дре", 0, 10);
+
+        assertEquals(1.0, eviction("expired"));
+        assertEquals(2.0, counter("miss"));
+    }
+
+    @Test
+    void leastRecentlyReadPageIsEvicted() {
+        ItemSearchCache cache = cache(Duration.ofMinutes(1), 2);
+        cache.search("дре", 0, 10);
+        cache.search("дре", 0, 5);
+        cache.search("дре", 0, 10);
+
+        cache.search("дре", 0, 1);
+        cache.search("дре", 0, 10);
+
+        assertEquals(1.0, eviction("size"));
+        assertEquals(2.0, counter("hit"));
+    }
+
+    @Test
+    void largePageIsNotCached() {
+        ItemSearchCache cache = cache(Duration.ofMinutes(1), 10);
+
+        cache.search("дре", 0, 200);
+        cache.search("дре", 0, 200);
+
+        assertEquals(0.0, counter("hit"));
+        assertEquals(0.0, counter("miss"));
+    }
+
+    private ItemSearchCache cache(Duration ttl, int maxEntries) {
+        return new ItemSearchCache(index, meterRegistry, ttl, maxEntries, 100);
+    }
+
+    private double counter(String result) {
+        return meterRegistry.counter("shareit.item-search.cache", "result", result).count();
+    }
+
+    private double eviction(String cause) {
+        return meterRegistry.counter("shareit.item-search.cache.evictions", "cause", cause).count();
+    }
+
+    private static Item item(Long id, String name) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setDescription(name);
+        item.setAvailable(true);
+        return item;
+    }
+
+    private static List<String> names(List<ItemDto> found) {
+        return found.stream().map(ItemDto::getName).collect(Collectors.toList());
+    }
+}
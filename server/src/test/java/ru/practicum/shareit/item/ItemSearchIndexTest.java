@@ -0,0 +1,127 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemSearchIndexTest {
+    @TempDir
+    Path dir;
+
+    private Path snapshot;
+    private List<Item> items;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = dir.resolve("items.idx");
+        items = List.of(item(1L, 0L, "Дрель"), item(2L, 0L, "Пила"));
+        ItemSearchIndex index = new ItemSearchIndex(repository(items), snapshot.toString());
+        index.load();
+        index.saveSnapshot();
+    }
+
+    @Test
+    void unchangedTableIsLoadedFromSnapshot() {
+        ItemRepository itemRepository = repository(items);
+        ItemSearchIndex index = new ItemSearchIndex(itemRepository, snapshot.toString());
+
+        index.load();
+
+        verify(itemRepository, never()).findAll();
+        assertEquals(List.of("Дрель"), names(index.search("дре", 0, 10)));
+    }
+
+    @Test
+    void updatedItemInvalidatesSnapshot() {
+        // число вещей и максимальный id те же, изменилась только версия вещи 1
+        ItemRepository itemRepository = repository(List.of(item(1L, 1L, "Молоток"), item(2L, 0L, "Пила")));
+        ItemSearchIndex index = new ItemSearchIndex(itemRepository, snapshot.toString());
+
+        index.load();
+
+        verify(itemRepository, times(1)).findAll();
+        assertEquals(List.of(), names(index.search("дре", 0, 10)));
+        assertEquals(List.of("Молоток"), names(index.search("мол", 0, 10)));
+    }
+
+    @Test
+    void loadedSnapshotIsNotReusedWithoutShutdown() {
+        new ItemSearchIndex(repository(items), snapshot.toString()).load();
+        ItemRepository itemRepository = repository(items);
+
+        new ItemSearchIndex(itemRepository, snapshot.toString()).load();
+
+        verify(itemRepository, times(1)).findAll();
+    }
+
+    @Test
+    void refreshRebuildsOnlyWhenTableChanged() {
+        ItemRepository itemRepository = repository(items);
+        ItemSearchIndex index = new ItemSearchIndex(itemRepository, "");
+        index.load();
+
+        index.refresh();
+        verify(itemRepository, times(1)).findAll();
+
+        // вещь добавлена другим экземпляром сервера
+        stub(itemRepository, List.of(items.get(0), items.get(1), item(3L, 0L, "Молоток")));
+        index.refresh();
+
+        verify(itemRepository, times(2)).findAll();
+        assertEquals(List.of("Молоток"), names(index.search("мол", 0, 10)));
+    }
+
+    private ItemRepository repository(List<Item> content) {
+        return stub(mock(ItemRepository.class), content);
+    }
+
+    private ItemRepository stub(ItemRepository itemRepository, List<Item> content) {
+        when(itemRepository.findAll()).thenReturn(content);
+        long maxId = content.stream().mapToLong(Item::getId).max().orElse(0);
+        long versionSum = content.stream().mapToLong(Item::getVersion).sum();
+        when(itemRepository.getWatermark()).thenReturn(new ItemWatermark() {
+            @Override
+            public Long getCount() {
+                return (long) content.size();
+            }
+
+            @Override
+            public Long getMaxId() {
+                return maxId;
+            }
+
+            @Override
+            public Long getVersionSum() {
+                return versionSum;
+            }
+        });
+        return itemRepository;
+    }
+
+    private static Item item(Long id, Long version, String name) {
+        Item item = new Item();
+        item.setId(id);
+        item.setVersion(version);
+        item.setName(name);
+        item.setDescription(name + " для дома");
+        item.setAvailable(true);
+        return item;
+    }
+
+    private static List<String> names(List<ItemDto> found) {
+        return found.stream().map(ItemDto::getName).collect(Collectors.toList());
+    }
+}
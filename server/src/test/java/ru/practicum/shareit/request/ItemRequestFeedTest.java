@@ -0,0 +1,124 @@
+package ru.practicum.shareit.request;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.utils.PageCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ItemRequestFeedTest {
+    private static final int MAX_ENTRIES = 5;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final User first = new User(1L, "first", "first@mail.ru");
+    private final User second = new User(2L, "second", "second@mail.ru");
+    private ItemRequestRepository itemRequestRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private ItemRequestFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        itemRequestRepository = mock(ItemRequestRepository.class);
+        when(itemRequestRepository.findLatestWithUser(any())).thenReturn(List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        feed = new ItemRequestFeed(itemRequestRepository, mock(ItemRepository.class), meterRegistry, MAX_ENTRIES);
+        feed.rebuild();
+    }
+
+    @Test
+    void completeFeedServesPartialPage() {
+        addRequests(3);
+
+        assertEquals(List.of(3L, 2L, 1L), ids(feed.page(3L, 0, 10)));
+        assertEquals(List.of(3L, 1L), ids(feed.page(2L, 0, 10)));
+    }
+
+    @Test
+    void firstPageIsHitWhenFeedOverflows() {
+        addRequests(MAX_ENTRIES + 3);
+
+        assertEquals(List.of(8L, 7L, 6L), ids(feed.page(3L, 0, 3)));
+        assertEquals(List.of(7L, 5L), ids(feed.page(2L, 0, 2)));
+        assertEquals(2.0, counter("hit"));
+    }
+
+    @Test
+    void pageCrossingWindowEdgeIsMiss() {
+        addRequests(MAX_ENTRIES + 3);
+
+        assertNull(feed.page(3L, 3, 3));
+        assertNull(feed.page(2L, 0, 3));
+        assertEquals(2.0, counter("miss"));
+    }
+
+    @Test
+    void cursorPageInsideWindowIsHit() {
+        addRequests(MAX_ENTRIES + 3);
+
+        assertEquals(List.of(5L, 4L), ids(feed.pageBefore(3L, cursor(6), 2)));
+        assertNull(feed.pageBefore(3L, cursor(5), 2));
+        assertNull(feed.pageBefore(3L, cursor(2), 1));
+    }
+
+    @Test
+    void requestOlderThanWindowIsNotAdded() {
+        addRequests(MAX_ENTRIES + 3);
+        feed.add(request(1));
+
+        assertEquals(List.of(8L, 7L, 6L, 5L, 4L), ids(feed.page(3L, 0, MAX_ENTRIES)));
+    }
+
+    @Test
+    void rebuildPicksUpOtherInstancesAndKeepsConcurrentAdds() {
+        addRequests(1);
+        when(itemRequestRepository.findLatestWithUser(any())).thenAnswer(invocation -> {
+            feed.add(request(3));
+            return List.of(request(2), request(1));
+        });
+        feed.rebuild();
+
+        assertEquals(List.of(3L, 2L, 1L), ids(feed.page(4L, 0, 10)));
+    }
+
+    @Test
+    void emptyWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ItemRequestFeed(mock(ItemRequestRepository.class),
+                mock(ItemRepository.class), new SimpleMeterRegistry(), 0));
+    }
+
+    private void addRequests(int count) {
+        for (int i = 1; i <= count; i++) {
+            feed.add(request(i));
+        }
+    }
+
+    // нечётные запросы создаёт первый пользователь, чётные - второй
+    private ItemRequest request(long id) {
+        return new ItemRequest(id, "request " + id, id % 2 == 1 ? first : second, START.plusMinutes(id), null);
+    }
+
+    private PageCursor cursor(long id) {
+        return new PageCursor(START.plusMinutes(id), id);
+    }
+
+    private List<Long> ids(List<ItemRequestDto> page) {
+        return page.stream().map(ItemRequestDto::getId).collect(Collectors.toList());
+    }
+
+    private double counter(String result) {
+        return meterRegistry.counter("shareit.request-feed", "result", result).count();
+    }
+}
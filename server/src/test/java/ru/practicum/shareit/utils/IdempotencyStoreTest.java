@@ -0,0 +1,142 @@
+package ru.practicum.shareit.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.exception.ConflictException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyStoreTest {
+    private final IdempotencyStore store = new IdempotencyStore(new ObjectMapper(), Duration.ofHours(1),
+            Duration.ofSeconds(5), 100);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void replayReturnsStoredResult() {
+        assertEquals(1, store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+        assertEquals(1, store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+        assertEquals(2, store.execute("items", 2L, "key", "request", calls::incrementAndGet));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void keyReusedWithAnotherRequestIsRejected() {
+        store.execute("items", 1L, "key", "request", calls::incrementAndGet);
+
+        assertThrows(ConflictException.class,
+                () -> store.execute("items", 1L, "key", "other", calls::incrementAndGet));
+    }
+
+    @Test
+    void requestsAreComparedByContentNotToString() {
+        store.execute("items", 1L, "key", new Body("Дрель"), calls::incrementAndGet);
+
+        assertEquals(1, store.execute("items", 1L, "key", new Body("Дрель"), calls::incrementAndGet));
+        assertThrows(ConflictException.class,
+                () -> store.execute("items", 1L, "key", new Body("Пила"), calls::incrementAndGet));
+    }
+
+    @Test
+    void inFlightDuplicateWaitsForFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> store.execute("items", 1L, "key", "request", () -> {
+            started.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        }));
+        started.await();
+
+        releaseLater(release);
+
+        assertEquals(1, store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+        assertEquals(1, first.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void inFlightDuplicateGivesUpAfterTimeout() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(new ObjectMapper(), Duration.ofHours(1),
+                Duration.ofMillis(100), 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> store.execute("items", 1L, "key", "request", () -> {
+            started.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        }));
+        started.await();
+
+        assertThrows(ConflictException.class,
+                () -> store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+        release.countDown();
+        assertEquals(1, first.get());
+    }
+
+    @Test
+    void failedFirstRequestReleasesWaitersAndKey() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> store.execute("items", 1L, "key", "request", () -> {
+            started.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }));
+        started.await();
+
+        releaseLater(release);
+
+        assertThrows(StackOverflowError.class,
+                () -> store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+        ExecutionException failure = assertThrows(ExecutionException.class, first::get);
+        assertInstanceOf(StackOverflowError.class, failure.getCause());
+        assertEquals(1, store.execute("items", 1L, "key", "request", calls::incrementAndGet));
+    }
+
+    // отпускает первый запрос, когда дубликат уже ждёт его результата
+    private static void releaseLater(CountDownLatch release) {
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        }).start();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // без toString(): String.valueOf дал бы разные строки для одинаковых тел
+    private static class Body {
+        public final String name;
+
+        Body(String name) {
+            this.name = name;
+        }
+    }
+}